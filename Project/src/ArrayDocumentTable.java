@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link DocumentTable} that stores locations in a list and word counts in an
+ * array that grows as ids are assigned.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class ArrayDocumentTable implements DocumentTable {
+
+	/**
+	 * Stores the locations, where the index of each location is its id.
+	 */
+	private final List<String> locations;
+
+	/**
+	 * Stores mappings of the locations and their ids.
+	 */
+	private final Map<String, Integer> ids;
+
+	/**
+	 * Stores the total number of words for each location id.
+	 */
+	private int[] counts;
+
+	/**
+	 * Initializes an empty document table.
+	 */
+	public ArrayDocumentTable() {
+		this.locations = new ArrayList<>();
+		this.ids = new HashMap<>();
+		this.counts = new int[16];
+	}
+
+	@Override
+	public int add(String location) {
+
+		Integer id = this.ids.get(location);
+		if (id != null) {
+			return id;
+		}
+
+		int next = this.locations.size();
+		this.locations.add(location);
+		this.ids.put(location, next);
+
+		if (next >= this.counts.length) {
+			this.counts = Arrays.copyOf(this.counts, this.counts.length * 2);
+		}
+		return next;
+	}
+
+	@Override
+	public int getId(String location) {
+
+		Integer id = this.ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	@Override
+	public String getLocation(int id) {
+		return this.locations.get(id);
+	}
+
+	@Override
+	public int getCount(int id) {
+		return this.counts[id];
+	}
+
+	@Override
+	public void updateCount(int id, int count) {
+
+		if (this.counts[id] < count) {
+			this.counts[id] = count;
+		}
+	}
+
+	@Override
+	public int size() {
+		return this.locations.size();
+	}
+
+	@Override
+	public Map<String, Integer> getCounts() {
+
+		Map<String, Integer> sortedCounts = new TreeMap<>();
+		for (int id = 0; id < this.locations.size(); id++) {
+			sortedCounts.put(this.locations.get(id), this.counts[id]);
+		}
+		return sortedCounts;
+	}
+}
@@ -10,6 +10,11 @@
  */
 public class CompareSearch implements Comparable<CompareSearch> {
 
+	/**
+	 * Initialize path id of CompareSearch object
+	 */
+	private int document;
+
 	/**
 	 * Initialize path of CompareSearch object
 	 */
@@ -29,12 +34,14 @@ public class CompareSearch implements Comparable<CompareSearch> {
 	 * Creates CompareSearch objects which contain locations, score and count for
 	 * each word.
 	 * 
+	 * @param document id of the path of where word is found
 	 * @param location path of where word is found
 	 * 
 	 * @param score    average of how many times this word is used in the file
 	 * @param count    how many times this word is found in the file
 	 */
-	public CompareSearch(String location, double score, int count) {
+	public CompareSearch(int document, String location, double score, int count) {
+		this.document = document;
 		this.location = location;
 		this.score = score;
 		this.count = count;
@@ -66,6 +73,13 @@ public class CompareSearch implements Comparable<CompareSearch> {
 		}
 	}
 
+	/**
+	 * @return path id of CompareSearch object.
+	 */
+	public int getDocument() {
+		return this.document;
+	}
+
 	/**
 	 * @return count of CompareSearch object.
 	 */
@@ -86,16 +100,4 @@ public class CompareSearch implements Comparable<CompareSearch> {
 	public int getCount() {
 		return this.count;
 	}
-
-	/**
-	 * Updates the search comparison object's count and score.
-	 * 
-	 * @param comp  the CompareSearch object to be updated
-	 * @param count the total count of the word in the file
-	 * @param wordCount the total count of the word in all files
-	 */
-	public static void updateSearch(CompareSearch comp, int count, double wordCount) {
-		comp.count += count;
-		comp.score = comp.count / wordCount;
-	}
 }
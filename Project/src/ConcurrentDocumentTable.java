@@ -0,0 +1,133 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A thread-safe {@link DocumentTable}. Looking up ids, locations, and
+ * word counts never blocks. Locations and counts are stored in fixed size
+ * chunks that are never copied, so only assigning a new id takes a lock, and
+ * word counts are updated atomically.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class ConcurrentDocumentTable implements DocumentTable {
+
+	/**
+	 * The number of ids stored in each chunk.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * Stores mappings of the locations and their ids.
+	 */
+	private final Map<String, Integer> ids;
+
+	/**
+	 * Stores the locations in chunks, where the position of each location is its
+	 * id.
+	 */
+	private volatile String[][] locations;
+
+	/**
+	 * Stores the total number of words for each location id in chunks.
+	 */
+	private volatile AtomicIntegerArray[] counts;
+
+	/**
+	 * Number of locations with an id.
+	 */
+	private volatile int size;
+
+	/**
+	 * Initializes an empty document table.
+	 */
+	public ConcurrentDocumentTable() {
+		this.ids = new ConcurrentHashMap<>();
+		this.locations = new String[][] { new String[CHUNK_SIZE] };
+		this.counts = new AtomicIntegerArray[] { new AtomicIntegerArray(CHUNK_SIZE) };
+		this.size = 0;
+	}
+
+	@Override
+	public int add(String location) {
+
+		Integer id = this.ids.get(location);
+		if (id != null) {
+			return id;
+		}
+
+		synchronized (this) {
+			id = this.ids.get(location);
+			if (id != null) {
+				return id;
+			}
+
+			int next = this.size;
+			int chunk = next / CHUNK_SIZE;
+			if (chunk >= this.locations.length) {
+				String[][] grownLocations = Arrays.copyOf(this.locations, chunk * 2);
+				AtomicIntegerArray[] grownCounts = Arrays.copyOf(this.counts, chunk * 2);
+				for (int i = this.locations.length; i < grownLocations.length; i++) {
+					grownLocations[i] = new String[CHUNK_SIZE];
+					grownCounts[i] = new AtomicIntegerArray(CHUNK_SIZE);
+				}
+				this.counts = grownCounts;
+				this.locations = grownLocations;
+			}
+
+			this.locations[chunk][next % CHUNK_SIZE] = location;
+			this.size = next + 1;
+			this.ids.put(location, next);
+			return next;
+		}
+	}
+
+	@Override
+	public int getId(String location) {
+
+		Integer id = this.ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	@Override
+	public String getLocation(int id) {
+		return this.locations[id / CHUNK_SIZE][id % CHUNK_SIZE];
+	}
+
+	@Override
+	public int getCount(int id) {
+		return this.counts[id / CHUNK_SIZE].get(id % CHUNK_SIZE);
+	}
+
+	@Override
+	public void updateCount(int id, int count) {
+
+		AtomicIntegerArray chunk = this.counts[id / CHUNK_SIZE];
+		int index = id % CHUNK_SIZE;
+		int current = chunk.get(index);
+		while (current < count && !chunk.compareAndSet(index, current, count)) {
+			current = chunk.get(index);
+		}
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public Map<String, Integer> getCounts() {
+
+		Map<String, Integer> sortedCounts = new TreeMap<>();
+		int size = this.size;
+		for (int id = 0; id < size; id++) {
+			sortedCounts.put(getLocation(id), getCount(id));
+		}
+		return sortedCounts;
+	}
+}
@@ -0,0 +1,108 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe version of {@link InvertedIndex} that locks each word
+ * separately instead of the whole index. Words are stored in concurrent maps,
+ * path ids and word counts are stored in a {@link ConcurrentDocumentTable}, and
+ * the postings of a single word are only locked while positions are added to
+ * them or while they are copied for a search. Threads adding different words,
+ * or searching while others add, do not wait on each other.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class ConcurrentInvertedIndex extends InvertedIndex {
+
+	/**
+	 * The number of times words have been added. A counter that is spread across
+	 * threads, so adding words does not contend on a single value.
+	 */
+	private final LongAdder version;
+
+	/**
+	 * Initializes the concurrent maps.
+	 */
+	public ConcurrentInvertedIndex() {
+		super(new ConcurrentHashMap<>(), new ConcurrentSkipListSet<>(), new ConcurrentDocumentTable());
+		this.version = new LongAdder();
+	}
+
+	@Override
+	public void addToMap(String word, String path, int position) {
+
+		TermPostings postings = getOrCreate(word);
+		int document = this.documents.add(path);
+
+		/* Counted first, so a search never sees a position in a path of 0 words. */
+		this.documents.updateCount(document, position);
+		synchronized (postings) {
+			postings.add(document).add(position);
+		}
+		updateVersion();
+	}
+
+	@Override
+	protected void mergePostings(String word, TermPostings other, int[] remap, int offset) {
+
+		TermPostings postings = getOrCreate(word);
+		synchronized (postings) {
+			postings.addAll(other, remap, offset);
+		}
+	}
+
+	@Override
+	public long getVersion() {
+		return this.version.sum();
+	}
+
+	@Override
+	protected void updateVersion() {
+		this.version.increment();
+	}
+
+	@Override
+	protected TermPostings getPostings(String word) {
+
+		TermPostings postings = this.map.get(word);
+		if (postings == null) {
+			return null;
+		}
+
+		synchronized (postings) {
+			/* Computed here so the snapshot carries the upper bound with it. */
+			postings.getMaxScore(this.documents);
+			return postings.snapshot();
+		}
+	}
+
+	@Override
+	protected Set<Integer> decode(String word, PostingList postings) {
+
+		synchronized (this.map.get(word)) {
+			return super.decode(word, postings);
+		}
+	}
+
+	/**
+	 * Returns the postings of a word, adding the word if it is new. The word is
+	 * added to the sorted words after its postings exist, so a word found while
+	 * searching always has postings.
+	 *
+	 * @param word the parsed word
+	 * @return the postings of the word
+	 */
+	private TermPostings getOrCreate(String word) {
+
+		TermPostings postings = this.map.get(word);
+		if (postings == null) {
+			postings = this.map.computeIfAbsent(word, key -> new TermPostings());
+			this.terms.add(word);
+		}
+		return postings;
+	}
+}
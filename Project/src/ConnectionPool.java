@@ -0,0 +1,451 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Keeps connections to web servers open between requests, so fetching many
+ * pages from the same host does not connect, look up the host, and shake hands
+ * for every page. Idle connections are kept per scheme, host and port, most
+ * recently used first, and are closed once there are too many for a host or
+ * they have been idle too long.
+ *
+ * Host names are looked up through a {@link DnsCache}. Secure connections are
+ * all created by the same {@link SSLSocketFactory} with the host name given, so
+ * a new connection to a host resumes the TLS session of an earlier one instead
+ * of doing a full handshake.
+ *
+ * This class is thread-safe, but each connection must only be used by one
+ * thread at a time.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class ConnectionPool {
+
+	/**
+	 * The default maximum number of idle connections kept for each host.
+	 */
+	public static final int DEFAULT_MAX_IDLE = 16;
+
+	/**
+	 * The default time a connection is kept while idle. Servers usually close
+	 * idle connections after somewhere between 5 seconds and a few minutes.
+	 */
+	public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(15);
+
+	/**
+	 * The default time to wait for a server to accept a connection.
+	 */
+	public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+	/**
+	 * The default time to wait for a server to send more of a response, so a
+	 * stalled server or a connection closed without notice does not hold up a
+	 * fetch forever.
+	 */
+	public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+
+	/**
+	 * The idle connections of each scheme, host and port, most recently used
+	 * first.
+	 */
+	private final Map<String, Deque<Connection>> idle;
+
+	/**
+	 * The maximum number of idle connections kept for each host.
+	 */
+	private final int maxIdle;
+
+	/**
+	 * The time a connection is kept while idle, in nanoseconds.
+	 */
+	private final long idleTimeout;
+
+	/**
+	 * The time to wait for a server to accept a connection, in milliseconds.
+	 */
+	private final int connectTimeout;
+
+	/**
+	 * The time to wait for a server to send more of a response, in milliseconds.
+	 */
+	private final int readTimeout;
+
+	/**
+	 * Looks up the addresses of hosts.
+	 */
+	private final DnsCache dns;
+
+	/**
+	 * Creates every secure connection, so TLS sessions are shared between them.
+	 */
+	private final SSLSocketFactory tls;
+
+	/**
+	 * When connections idle too long were last closed, from
+	 * {@link System#nanoTime()}.
+	 */
+	private final AtomicLong lastEviction;
+
+	/**
+	 * The number of connections opened.
+	 */
+	private final LongAdder opened;
+
+	/**
+	 * The number of times an idle connection was used again.
+	 */
+	private final LongAdder reused;
+
+	/**
+	 * Initializes a pool with the default limits.
+	 */
+	public ConnectionPool() {
+		this(DEFAULT_MAX_IDLE, DEFAULT_IDLE_TIMEOUT, new DnsCache());
+	}
+
+	/**
+	 * Initializes an empty pool with the default connect and read timeouts.
+	 *
+	 * @param maxIdle     the maximum number of idle connections kept for each host
+	 * @param idleTimeout the time a connection is kept while idle
+	 * @param dns         looks up the addresses of hosts
+	 */
+	public ConnectionPool(int maxIdle, Duration idleTimeout, DnsCache dns) {
+		this(maxIdle, idleTimeout, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, dns);
+	}
+
+	/**
+	 * Initializes an empty pool.
+	 *
+	 * @param maxIdle        the maximum number of idle connections kept for each
+	 *                       host
+	 * @param idleTimeout    the time a connection is kept while idle
+	 * @param connectTimeout the time to wait for a server to accept a connection
+	 * @param readTimeout    the time to wait for a server to send more of a
+	 *                       response
+	 * @param dns            looks up the addresses of hosts
+	 */
+	public ConnectionPool(int maxIdle, Duration idleTimeout, Duration connectTimeout, Duration readTimeout,
+			DnsCache dns) {
+		this.idle = new ConcurrentHashMap<>();
+		this.maxIdle = maxIdle;
+		this.idleTimeout = idleTimeout.toNanos();
+		this.connectTimeout = (int) Math.min(connectTimeout.toMillis(), Integer.MAX_VALUE);
+		this.readTimeout = (int) Math.min(readTimeout.toMillis(), Integer.MAX_VALUE);
+		this.dns = dns;
+		this.tls = (SSLSocketFactory) SSLSocketFactory.getDefault();
+		this.lastEviction = new AtomicLong(System.nanoTime());
+		this.opened = new LongAdder();
+		this.reused = new LongAdder();
+	}
+
+	/**
+	 * Returns an idle connection to the server of a url, or opens a new one if
+	 * there is none. The connection must be given back with
+	 * {@link #release(Connection)} or closed once the response has been read.
+	 *
+	 * @param url the url to connect to
+	 * @return a connection to the server of the url
+	 * @throws IOException if unable to connect
+	 */
+	public Connection acquire(URL url) throws IOException {
+
+		Deque<Connection> connections = idle.get(key(url));
+		if (connections != null) {
+			Connection connection;
+			long now = System.nanoTime();
+			while ((connection = connections.pollFirst()) != null) {
+				if (now - connection.idleSince < idleTimeout && !connection.socket.isClosed()) {
+					connection.reused = true;
+					reused.increment();
+					return connection;
+				}
+				connection.close();
+			}
+		}
+		return open(url);
+	}
+
+	/**
+	 * Opens a new connection to the server of a url. Each address of the host is
+	 * tried in turn, and the host is looked up again next time if none of them
+	 * could be connected to.
+	 *
+	 * @param url the url to connect to
+	 * @return a new connection to the server of the url
+	 * @throws IOException if unable to connect
+	 */
+	public Connection open(URL url) throws IOException {
+
+		String host = url.getHost();
+		boolean https = isHttps(url);
+		int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+
+		Socket socket = null;
+		IOException failure = new UnknownHostException(host);
+		for (InetAddress address : dns.resolve(host)) {
+			Socket attempt = new Socket();
+			try {
+				attempt.connect(new InetSocketAddress(address, port), connectTimeout);
+				socket = attempt;
+				break;
+			} catch (IOException e) {
+				attempt.close();
+				failure = e;
+			}
+		}
+		if (socket == null) {
+			dns.remove(host);
+			throw failure;
+		}
+
+		try {
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(readTimeout);
+			if (https) {
+				// layered with the host name, so the server name is sent and the session is cached
+				SSLSocket secure = (SSLSocket) tls.createSocket(socket, host, port, true);
+				secure.startHandshake();
+				socket = secure;
+			}
+			opened.increment();
+			return new Connection(key(url), socket);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gives back a connection after its response has been read completely, so
+	 * it can be used again. Also closes any connections idle too long, at most
+	 * once every second.
+	 *
+	 * @param connection the connection to give back
+	 */
+	public void release(Connection connection) {
+
+		if (connection.socket.isClosed()) {
+			return;
+		}
+
+		connection.idleSince = System.nanoTime();
+		idle.compute(connection.key, (key, connections) -> {
+			if (connections == null) {
+				connections = new ConcurrentLinkedDeque<>();
+			}
+			connections.addFirst(connection);
+			return connections;
+		});
+
+		Deque<Connection> connections = idle.get(connection.key);
+		while (connections != null && connections.size() > maxIdle) {
+			Connection oldest = connections.pollLast();
+			if (oldest != null) {
+				oldest.close();
+			}
+		}
+		evictIdle();
+	}
+
+	/**
+	 * Closes every connection idle too long, if this was last done more than a
+	 * second ago. Hosts left without idle connections are removed.
+	 */
+	private void evictIdle() {
+
+		long now = System.nanoTime();
+		long last = lastEviction.get();
+		if (now - last < Duration.ofSeconds(1).toNanos() || !lastEviction.compareAndSet(last, now)) {
+			return;
+		}
+
+		for (String key : idle.keySet()) {
+			Deque<Connection> connections = idle.get(key);
+			if (connections == null) {
+				continue;
+			}
+			for (Connection connection : connections) {
+				if (now - connection.idleSince >= idleTimeout && connections.removeFirstOccurrence(connection)) {
+					connection.close();
+				}
+			}
+			// removed while holding the key, so a connection given back meanwhile is not lost
+			idle.computeIfPresent(key, (k, current) -> current.isEmpty() ? null : current);
+		}
+	}
+
+	/**
+	 * Closes every idle connection.
+	 */
+	public void close() {
+
+		for (Deque<Connection> connections : idle.values()) {
+			Connection connection;
+			while ((connection = connections.pollFirst()) != null) {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of connections opened.
+	 *
+	 * @return number of connections opened
+	 */
+	public long getOpened() {
+		return opened.sum();
+	}
+
+	/**
+	 * Returns the number of times an idle connection was used again.
+	 *
+	 * @return number of connections reused
+	 */
+	public long getReused() {
+		return reused.sum();
+	}
+
+	/**
+	 * Returns the cache used to look up the addresses of hosts.
+	 *
+	 * @return the host name cache
+	 */
+	public DnsCache getDns() {
+		return dns;
+	}
+
+	/**
+	 * Returns whether a url is fetched over a secure connection.
+	 *
+	 * @param url the url to check
+	 * @return {@code true} if the scheme is https
+	 */
+	private static boolean isHttps(URL url) {
+		return "https".equalsIgnoreCase(url.getProtocol());
+	}
+
+	/**
+	 * Returns the scheme, host and port identifying the server of a url.
+	 *
+	 * @param url the url
+	 * @return the key of the idle connections to the server
+	 */
+	private static String key(URL url) {
+		int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+		return (isHttps(url) ? "https://" : "http://") + url.getHost().toLowerCase() + ":" + port;
+	}
+
+	/**
+	 * An open connection to a web server, along with buffered streams to read and
+	 * write it.
+	 */
+	public static class Connection implements Closeable {
+
+		/**
+		 * The scheme, host and port of the server.
+		 */
+		private final String key;
+
+		/**
+		 * The socket connected to the server.
+		 */
+		private final Socket socket;
+
+		/**
+		 * The buffered stream of the responses.
+		 */
+		private final InputStream input;
+
+		/**
+		 * The buffered stream of the requests.
+		 */
+		private final OutputStream output;
+
+		/**
+		 * Whether this connection was idle in the pool before being used.
+		 */
+		private boolean reused;
+
+		/**
+		 * When this connection was last given back, from {@link System#nanoTime()}.
+		 */
+		private long idleSince;
+
+		/**
+		 * Initializes a connection.
+		 *
+		 * @param key    the scheme, host and port of the server
+		 * @param socket the socket connected to the server
+		 * @throws IOException if unable to get the streams of the socket
+		 */
+		private Connection(String key, Socket socket) throws IOException {
+			this.key = key;
+			this.socket = socket;
+			this.input = new BufferedInputStream(socket.getInputStream());
+			this.output = new BufferedOutputStream(socket.getOutputStream());
+		}
+
+		/**
+		 * Returns the buffered stream of the responses.
+		 *
+		 * @return the stream to read responses from
+		 */
+		public InputStream getInput() {
+			return input;
+		}
+
+		/**
+		 * Returns the buffered stream of the requests, which must be flushed after
+		 * each request.
+		 *
+		 * @return the stream to write requests to
+		 */
+		public OutputStream getOutput() {
+			return output;
+		}
+
+		/**
+		 * Returns whether this connection was idle in the pool before being used,
+		 * in which case the server may have closed it in the meantime.
+		 *
+		 * @return {@code true} if this connection was used before
+		 */
+		public boolean isReused() {
+			return reused;
+		}
+
+		/**
+		 * Closes this connection, ignoring any errors.
+		 */
+		@Override
+		public void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing left to do with a connection that failed to close
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the addresses of recently looked up host names, so fetching many
+ * pages from the same host only looks it up once in a while. When the cache is
+ * full, the least recently used host is removed, and every host is looked up
+ * again once it has been cached for longer than the time to live.
+ *
+ * This class is thread-safe.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class DnsCache {
+
+	/**
+	 * The default maximum number of hosts cached.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The default time a host is cached before being looked up again.
+	 */
+	public static final Duration DEFAULT_TTL = Duration.ofMinutes(1);
+
+	/**
+	 * The cached hosts, in order from least to most recently used.
+	 */
+	private final Map<String, Entry> entries;
+
+	/**
+	 * The maximum number of hosts cached.
+	 */
+	private final int capacity;
+
+	/**
+	 * The time a host is cached before being looked up again, in nanoseconds.
+	 */
+	private final long ttl;
+
+	/**
+	 * The number of hosts found in the cache.
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * The number of hosts looked up.
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Initializes a cache with the default capacity and time to live.
+	 */
+	public DnsCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_TTL);
+	}
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param capacity the maximum number of hosts cached
+	 * @param ttl      the time a host is cached before being looked up again
+	 */
+	public DnsCache(int capacity, Duration ttl) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The cache capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.ttl = ttl.toNanos();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > DnsCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the addresses of a host, looking it up if it is not cached or was
+	 * cached too long ago. The lookup is done without holding the lock, so a slow
+	 * lookup of one host does not hold up the others.
+	 *
+	 * @param host the host name
+	 * @return the addresses of the host, in the order given by the lookup
+	 * @throws UnknownHostException if the host could not be looked up
+	 */
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+
+		String key = host.toLowerCase();
+		synchronized (this.entries) {
+			Entry entry = this.entries.get(key);
+			if (entry != null && entry.expires - System.nanoTime() > 0) {
+				this.hits.increment();
+				return entry.addresses;
+			}
+		}
+
+		this.misses.increment();
+		InetAddress[] addresses = InetAddress.getAllByName(host);
+		synchronized (this.entries) {
+			this.entries.put(key, new Entry(addresses, System.nanoTime() + this.ttl));
+		}
+		return addresses;
+	}
+
+	/**
+	 * Removes a host from the cache, so it is looked up again next time. Used
+	 * when none of its cached addresses could be connected to.
+	 *
+	 * @param host the host name
+	 */
+	public void remove(String host) {
+		synchronized (this.entries) {
+			this.entries.remove(host.toLowerCase());
+		}
+	}
+
+	/**
+	 * Returns the number of hosts found in the cache.
+	 *
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Returns the number of hosts looked up.
+	 *
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Returns the number of hosts cached.
+	 *
+	 * @return number of cached hosts
+	 */
+	public int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	/**
+	 * The addresses of a host and when they must be looked up again.
+	 */
+	private static class Entry {
+
+		/**
+		 * The addresses of the host.
+		 */
+		private final InetAddress[] addresses;
+
+		/**
+		 * When the addresses must be looked up again, from
+		 * {@link System#nanoTime()}.
+		 */
+		private final long expires;
+
+		/**
+		 * Initializes an entry.
+		 *
+		 * @param addresses the addresses of the host
+		 * @param expires   when the addresses must be looked up again
+		 */
+		public Entry(InetAddress[] addresses, long expires) {
+			this.addresses = addresses;
+			this.expires = expires;
+		}
+	}
+}
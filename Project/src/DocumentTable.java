@@ -0,0 +1,70 @@
+import java.util.Map;
+
+/**
+ * Assigns dense integer ids to locations (paths or URLs) so the location
+ * strings are only stored once, and keeps track of the total number of words
+ * found in each location by id.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public interface DocumentTable {
+
+	/**
+	 * Returns the id of a location, assigning the next available id if the
+	 * location has not been seen before.
+	 *
+	 * @param location the path or url to look up
+	 * @return the id of the location
+	 */
+	public int add(String location);
+
+	/**
+	 * Returns the id of a location.
+	 *
+	 * @param location the path or url to look up
+	 * @return the id of the location, or -1 if the location has no id
+	 */
+	public int getId(String location);
+
+	/**
+	 * Returns the location for an id.
+	 *
+	 * @param id the id of the location
+	 * @return the path or url with that id
+	 */
+	public String getLocation(int id);
+
+	/**
+	 * Returns the total number of words found in a location.
+	 *
+	 * @param id the id of the location
+	 * @return the number of words in the location
+	 */
+	public int getCount(int id);
+
+	/**
+	 * Updates the total number of words found in a location if the provided count
+	 * is larger than the current one.
+	 *
+	 * @param id    the id of the location
+	 * @param count the number of words found so far in the location
+	 */
+	public void updateCount(int id, int count);
+
+	/**
+	 * Returns the number of locations with an id.
+	 *
+	 * @return number of locations in this table
+	 */
+	public int size();
+
+	/**
+	 * Returns the locations and their total number of words, sorted by location.
+	 *
+	 * @return mapping of locations and number of words in each location
+	 */
+	public Map<String, Integer> getCounts();
+}
@@ -29,59 +29,109 @@ public class Driver {
 	public static void main(String[] args) {
 		Instant start = Instant.now();
 		ArgumentParser arg = new ArgumentParser(args);
-		ThreadSafeInvertedIndex threadedIndex = new ThreadSafeInvertedIndex();
+		InvertedIndex threadedIndex = new ConcurrentInvertedIndex();
 		ThreadSafeResultsBuilder threadedResults = null;
 		ThreadSafeInvertedIndexBuilder threadSafeIndexBuilder = null;
 		WebCrawler webber = null;
 
-		if (arg.hasFlag("-threads") || arg.hasFlag(("-url"))) {
-			int threads = 5;
-			try {
-				threads = Integer.parseInt(arg.getString("-threads", "5"));
-				if (threads > 0) {
-					threadSafeIndexBuilder = new ThreadSafeInvertedIndexBuilder(threadedIndex, threads);
-					threadedResults = new ThreadSafeResultsBuilder(threadedIndex, threads);
-				}
-				if (arg.hasFlag("-url")) {
-					int limit = 50;
-					if (arg.hasFlag("-limit")) {
-						limit = Integer.parseInt(arg.getString("-limit", "50"));
+		// One pool of worker threads shared by every component, shut down on the way out
+		WorkQueue queue = null;
+
+		try {
+			if (arg.hasFlag("-threads") || arg.hasFlag(("-url"))) {
+				int threads = 5;
+				try {
+					threads = Integer.parseInt(arg.getString("-threads", "5"));
+					int flushSize = IndexBuffers.DEFAULT_THRESHOLD;
+					if (arg.hasFlag("-flush")) {
+						flushSize = Integer.parseInt(arg.getString("-flush"));
 					}
-					try {
-						webber = new WebCrawler(limit, threadedIndex, threads);
-						webber.crawl(arg.getString("-url"));
-					} catch (MalformedURLException e) {
-						Thread.currentThread().interrupt();
+					if (threads > 0) {
+						queue = new WorkQueue(threads, WorkQueue.DEFAULT_CAPACITY, WorkQueue.Policy.BLOCK);
+						long chunkSize = 0;
+						if (arg.hasFlag("-mmap")) {
+							chunkSize = Long.parseLong(arg.getString("-mmap", "16")) * 1024 * 1024;
+						}
+						threadSafeIndexBuilder = new ThreadSafeInvertedIndexBuilder(threadedIndex, queue, chunkSize,
+								flushSize);
+						QueryResults results = newResults(arg);
+						QueryCache cache = new QueryCache();
+						if (arg.hasFlag("-cache")) {
+							cache = new QueryCache(Integer.parseInt(arg.getString("-cache")));
+						}
+						threadedResults = new ThreadSafeResultsBuilder(threadedIndex, queue, results, cache);
 					}
+					if (arg.hasFlag("-url")) {
+						int limit = 50;
+						if (arg.hasFlag("-limit")) {
+							limit = Integer.parseInt(arg.getString("-limit", "50"));
+						}
+						try {
+							int maxFetches = 0;
+							if (arg.hasFlag("-virtual")) {
+								maxFetches = Integer.parseInt(arg.getString("-virtual", "256"));
+							}
+							webber = new WebCrawler(limit, threadedIndex, queue, flushSize, maxFetches);
+							webber.crawl(arg.getString("-url"));
+						} catch (MalformedURLException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				} catch (NullPointerException | IllegalArgumentException e) {
+					System.out.println("No path or legal argument givenss.");
+					return;
 				}
-			} catch (NullPointerException | IllegalArgumentException e) {
-				System.out.println("No path or legal argument givenss.");
-				return;
 			}
-		}
 		
-		if (arg.hasFlag("-port")) {
+			if (arg.hasFlag("-port")) {
 			
-			int port = Integer.parseInt(arg.getString("-port", "8080"));
+				int port = Integer.parseInt(arg.getString("-port", "8080"));
 				
-			Server server = new Server(port);
+				Server server = new Server(port);
 			
-			ServletHandler servletHandler = new ServletHandler();
-			servletHandler.addServletWithMapping(new ServletHolder(new ResultsServlet(threadedResults, threadedIndex)), "/browser");	
+				ServletHandler servletHandler = new ServletHandler();
+				servletHandler.addServletWithMapping(new ServletHolder(new ResultsServlet(threadedResults, threadedIndex)), "/browser");	
 
-			server.setHandler(servletHandler);
+				server.setHandler(servletHandler);
 			
-			try {
-				server.start();
-				server.join();
-			} catch (Exception e) {
-				e.printStackTrace();
+				try {
+					server.start();
+					server.join();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+
+			hasArgs(arg, threadedIndex, threadedResults, threadSafeIndexBuilder);
+			System.out.printf("Elapsed: %f seconds%n",
+					(double) Duration.between(start, Instant.now()).toMillis() / Duration.ofSeconds(1).toMillis());
+			if (arg.hasFlag("-stats") && queue != null) {
+				System.out.println(queue.getSummary());
+			}
+			if (arg.hasFlag("-stats") && arg.hasFlag("-url")) {
+				ConnectionPool pool = HttpsFetcher.getPool();
+				System.out.printf("Connections: %d opened, %d reused, %d host lookups, %d cached%n", pool.getOpened(),
+						pool.getReused(), pool.getDns().getMisses(), pool.getDns().getHits());
+			}
+		} finally {
+			if (queue != null) {
+				queue.shutdown();
 			}
 		}
+	}
 
-		hasArgs(arg, threadedIndex, threadedResults, threadSafeIndexBuilder);
-		System.out.printf("Elapsed: %f seconds%n",
-				(double) Duration.between(start, Instant.now()).toMillis() / Duration.ofSeconds(1).toMillis());
+	/**
+	 * Creates where the results of each query are stored, limited to the number
+	 * of results given by the maxresults argument if there is one.
+	 *
+	 * @param arg the args passed in to ArgumentParser
+	 * @return the empty query results
+	 */
+	public static QueryResults newResults(ArgumentParser arg) {
+		if (arg.hasFlag("-maxresults")) {
+			return new QueryResults(Long.parseLong(arg.getString("-maxresults")));
+		}
+		return new QueryResults();
 	}
 
 	/**
@@ -92,12 +142,12 @@ public class Driver {
 	 * @param threadedResultsBuilder the threaded results
 	 * @param threadSafeIndexBuilder the thread safe InvertedIndex builder
 	 */
-	public static void hasArgs(ArgumentParser arg, ThreadSafeInvertedIndex threadedIndex,
+	public static void hasArgs(ArgumentParser arg, InvertedIndex threadedIndex,
 			ThreadSafeResultsBuilder threadedResultsBuilder, ThreadSafeInvertedIndexBuilder threadSafeIndexBuilder) {
 
 		InvertedIndex index = new InvertedIndex();
 		InvertedIndexBuilder indexBuilder = new InvertedIndexBuilder(index);
-		ResultsBuilder resultsBuilder = new ResultsBuilder(index);
+		ResultsBuilder resultsBuilder = new ResultsBuilder(index, newResults(arg));
 
 		if (arg.hasFlag("-path")) {
 			hasPathArg(arg, indexBuilder, threadSafeIndexBuilder);
@@ -113,7 +163,7 @@ public class Driver {
 
 		}
 		if (arg.hasFlag("-results")) {
-			hasResultsArg(arg, threadedIndex, index);
+			hasResultsArg(arg, threadedResultsBuilder, resultsBuilder);
 		}
 	}
 
@@ -146,7 +196,7 @@ public class Driver {
 	 * @param threadedIndex the threaded InvertedIndex to be created
 	 * @param index         the InvertedIndex to be created
 	 */
-	static void hasCountsArg(ArgumentParser arg, ThreadSafeInvertedIndex threadedIndex, InvertedIndex index) {
+	static void hasCountsArg(ArgumentParser arg, InvertedIndex threadedIndex, InvertedIndex index) {
 		Path p = arg.getPath("-counts", Path.of("counts.json"));
 		try {
 			if (arg.hasFlag("-threads")) {
@@ -193,7 +243,7 @@ public class Driver {
 	 * @param threadedIndex the threaded InvertedIndex to be created
 	 * @param index         the InvertedIndex to be built
 	 */
-	public static void hasIndexArg(ArgumentParser arg, ThreadSafeInvertedIndex threadedIndex, InvertedIndex index) {
+	public static void hasIndexArg(ArgumentParser arg, InvertedIndex threadedIndex, InvertedIndex index) {
 		Path p = arg.getPath("-index", Path.of("index.json"));
 		try {
 			if (arg.hasFlag("-threads")) {
@@ -209,17 +259,18 @@ public class Driver {
 	/**
 	 * Check for the results argument.
 	 *
-	 * @param arg           the args passed in to ArgumentParser
-	 * @param threadedIndex the threaded InvertedIndex to be created
-	 * @param index         the InvertedIndex to be built
+	 * @param arg                    the args passed in to ArgumentParser
+	 * @param threadedResultsBuilder the threaded results
+	 * @param resultsBuilder         the results builder
 	 */
-	public static void hasResultsArg(ArgumentParser arg, ThreadSafeInvertedIndex threadedIndex, InvertedIndex index) {
+	public static void hasResultsArg(ArgumentParser arg, ThreadSafeResultsBuilder threadedResultsBuilder,
+			ResultsBuilder resultsBuilder) {
 		Path p = arg.getPath("-results", Path.of("results.json"));
 		try {
 			if (arg.hasFlag("-threads")) {
-				SimpleJsonWriter.asCompareResults(threadedIndex.getCompareMap(), p);
+				SimpleJsonWriter.asCompareResults(threadedResultsBuilder.getResults(), p);
 			} else {
-				SimpleJsonWriter.asCompareResults(index.getCompareMap(), p);
+				SimpleJsonWriter.asCompareResults(resultsBuilder.getResults(), p);
 			}
 		} catch (NullPointerException | IllegalArgumentException | IOException e) {
 			System.out.println("No path or legal argument given.");
@@ -1,5 +1,5 @@
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -85,10 +85,10 @@ public class HtmlFetcher {
 	 * @return the html or {@code null} if unable to fetch the resource or the
 	 *         resource is not html
 	 *
-	 * @see HttpsFetcher#openConnection(URL)
+	 * @see HttpsFetcher#fetchURL(URL)
 	 * @see HttpsFetcher#printGetRequest(PrintWriter, URL)
-	 * @see HttpsFetcher#getHeaderFields(BufferedReader)
-	 * @see HttpsFetcher#getContent(BufferedReader)
+	 * @see HttpsFetcher#getHeaderFields(InputStream)
+	 * @see HttpsFetcher#getContent(byte[])
 	 *
 	 * @see String#join(CharSequence, CharSequence...)
 	 *
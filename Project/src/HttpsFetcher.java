@@ -1,47 +1,53 @@
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.Socket;
 import java.net.URL;
 import java.net.URLConnection;
-import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
-import javax.net.SocketFactory;
-import javax.net.ssl.SSLSocketFactory;
 
 /**
  * An alternative to using {@link Socket} connections instead of a
  * {@link URLConnection} to fetch the headers and content from a URL on the web.
+ * Connections are kept open between requests by a shared
+ * {@link ConnectionPool}, so the body of every response is read by its length
+ * or its chunks instead of until the server closes the connection.
  */
 public class HttpsFetcher {
 
+	/**
+	 * The connections kept open between requests by every fetch.
+	 */
+	private static final ConnectionPool POOL = new ConnectionPool();
+
 	/**
 	 * Fetches the headers and content for the specified URL. The content is placed
-	 * as a list of all the lines fetched under the "Content" key.
+	 * as a list of all the lines fetched under the "Content" key. An idle
+	 * connection to the same server is used if there is one, and the request is
+	 * tried once more on a new connection if the server had closed it.
 	 *
 	 * @param url the url to fetch
 	 * @return a map with the headers and content
 	 * @throws IOException if unable to fetch headers and content
 	 */
 	public static Map<String, List<String>> fetchURL(URL url) throws IOException {
-		try (Socket socket = openConnection(url);
-				PrintWriter request = new PrintWriter(socket.getOutputStream());
-				InputStreamReader input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
-				BufferedReader response = new BufferedReader(input);) {
-			printGetRequest(request, url);
-
-			Map<String, List<String>> headers = getHeaderFields(response);
-			List<String> content = getContent(response);
-			headers.put("Content", content);
-
-			return headers;
+		ConnectionPool.Connection connection = POOL.acquire(url);
+		try {
+			return fetchURL(url, connection);
+		} catch (IOException e) {
+			if (!connection.isReused()) {
+				throw e;
+			}
+			return fetchURL(url, POOL.open(url));
 		}
 	}
 
@@ -60,32 +66,63 @@ public class HttpsFetcher {
 	}
 
 	/**
-	 * Uses a {@link Socket} to open a connection to the web server associated with
-	 * the provided URL. Supports HTTP and HTTPS connections.
+	 * Fetches the headers and content for the specified URL over a connection,
+	 * then gives the connection back to the pool if the server allows it to be
+	 * used again, or closes it otherwise.
 	 *
-	 * @param url the url to connect
-	 * @return a socket connection for that url
-	 * @throws UnknownHostException from
-	 *                              {@link SocketFactory#createSocket(String, int)}
-	 * @throws IOException          from
-	 *                              {@link SocketFactory#createSocket(String, int)}
-	 *
-	 * @see URL#openConnection()
+	 * @param url        the url to fetch
+	 * @param connection the connection to the server of the url
+	 * @return a map with the headers and content
+	 * @throws IOException if unable to fetch headers and content
 	 */
-	public static Socket openConnection(URL url) throws UnknownHostException, IOException {
-		String protocol = url.getProtocol();
-		String host = url.getHost();
+	private static Map<String, List<String>> fetchURL(URL url, ConnectionPool.Connection connection)
+			throws IOException {
+
+		boolean keepAlive = false;
+		try {
+			PrintWriter request = new PrintWriter(new OutputStreamWriter(connection.getOutput(), StandardCharsets.UTF_8));
+			printGetRequest(request, url);
 
-		boolean https = protocol != null && protocol.equalsIgnoreCase("https");
-		int defaultPort = https ? 443 : 80;
-		int port = url.getPort() < 0 ? defaultPort : url.getPort();
+			InputStream response = connection.getInput();
+			Map<String, List<String>> headers;
+			int status;
+			do {
+				// informational responses come before the real one
+				headers = getHeaderFields(response);
+				status = HtmlFetcher.getStatusCode(headers);
+			} while (status >= 100 && status < 200);
 
-		return https ? SSLSocketFactory.getDefault().createSocket(host, port)
-				: SocketFactory.getDefault().createSocket(host, port);
+			byte[] body;
+			String length = getHeader(headers, "Content-Length");
+			String encoding = getHeader(headers, "Transfer-Encoding");
+			boolean delimited = true;
+			if (status == 204 || status == 304) {
+				body = new byte[0];
+			} else if (encoding != null && encoding.toLowerCase().contains("chunked")) {
+				body = getChunkedBody(response);
+			} else if (length != null) {
+				body = readBytes(response, parseLength(length, 10));
+			} else {
+				// the end of the body is only known once the server closes the connection
+				body = response.readAllBytes();
+				delimited = false;
+			}
+
+			headers.put("Content", getContent(body));
+			keepAlive = delimited && isPersistent(headers);
+			return headers;
+		} finally {
+			if (keepAlive) {
+				POOL.release(connection);
+			} else {
+				connection.close();
+			}
+		}
 	}
 
 	/**
-	 * Writes a simple HTTP GET request to the provided socket writer.
+	 * Writes a simple HTTP GET request to the provided socket writer, asking the
+	 * server to keep the connection open afterwards.
 	 *
 	 * @param writer a writer created from a socket connection
 	 * @param url    the url to fetch via the socket connection
@@ -97,48 +134,194 @@ public class HttpsFetcher {
 
 		writer.printf("GET %s HTTP/1.1\r\n", resource);
 		writer.printf("Host: %s\r\n", host);
-		writer.printf("Connection: close\r\n");
+		writer.printf("Connection: keep-alive\r\n");
 		writer.printf("\r\n");
 		writer.flush();
+		if (writer.checkError()) {
+			throw new IOException("Unable to send request.");
+		}
 	}
 
 	/**
-	 * Gets the header fields from a reader associated with a socket connection.
-	 * Requires that the socket reader has not yet been used, otherwise this method
-	 * will return unpredictable results.
+	 * Gets the header fields from a stream associated with a socket connection,
+	 * leaving the stream at the start of the body. The status line is stored under
+	 * the {@code null} key.
 	 *
-	 * @param response a reader created from a socket connection
+	 * @param response a stream created from a socket connection
 	 * @return a map of header fields to a list of header values
-	 * @throws IOException from {@link BufferedReader#readLine()}
+	 * @throws IOException if the connection is closed before the headers end
 	 *
 	 * @see URLConnection#getHeaderFields()
 	 */
-	public static Map<String, List<String>> getHeaderFields(BufferedReader response) throws IOException {
+	public static Map<String, List<String>> getHeaderFields(InputStream response) throws IOException {
 		Map<String, List<String>> results = new HashMap<>();
 
-		String line = response.readLine();
+		String line = readLine(response);
+		if (line == null) {
+			throw new EOFException("Connection closed before the response.");
+		}
 		results.put(null, List.of(line));
 
-		while ((line = response.readLine()) != null && !line.isBlank()) {
-			String[] split = line.split(":\\s+", 2);
-			assert split.length == 2;
+		while ((line = readLine(response)) != null && !line.isBlank()) {
+			int colon = line.indexOf(':');
+			if (colon < 0) {
+				continue;
+			}
 
-			results.putIfAbsent(split[0], new ArrayList<>());
-			results.get(split[0]).add(split[1]);
+			String name = line.substring(0, colon).trim();
+			results.putIfAbsent(name, new ArrayList<>());
+			results.get(name).add(line.substring(colon + 1).trim());
 		}
 
 		return results;
 	}
 
 	/**
-	 * Gets the content from a socket. Whether this output includes headers depends
-	 * how the socket connection has already been used.
+	 * Splits the body of a response into lines, the same way
+	 * {@link java.io.BufferedReader#lines()} does.
+	 *
+	 * @param body the body of a response
+	 * @return a list of lines of the body
+	 */
+	public static List<String> getContent(byte[] body) {
+		return new String(body, StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+	}
+
+	/**
+	 * Reads a body sent in chunks, each starting with its length in hexadecimal,
+	 * until the empty chunk and any header fields after it.
+	 *
+	 * @param response a stream positioned at the start of the body
+	 * @return the body with the chunks joined together
+	 * @throws IOException if the connection is closed early or a chunk length is
+	 *                     invalid
+	 */
+	private static byte[] getChunkedBody(InputStream response) throws IOException {
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		while (true) {
+			String line = readLine(response);
+			if (line == null) {
+				throw new EOFException("Connection closed in the middle of a chunk.");
+			}
+
+			// anything after a semicolon is an extension that can be ignored
+			int semicolon = line.indexOf(';');
+			int length = parseLength(semicolon < 0 ? line : line.substring(0, semicolon), 16);
+			if (length == 0) {
+				break;
+			}
+
+			body.write(readBytes(response, length));
+			readLine(response);
+		}
+
+		String line;
+		while ((line = readLine(response)) != null && !line.isEmpty()) {
+			// skip the header fields sent after the body
+		}
+		return body.toByteArray();
+	}
+
+	/**
+	 * Reads exactly the given number of bytes.
+	 *
+	 * @param response the stream to read
+	 * @param length   the number of bytes to read
+	 * @return the bytes read
+	 * @throws IOException if the connection is closed first
+	 */
+	private static byte[] readBytes(InputStream response, int length) throws IOException {
+		byte[] bytes = response.readNBytes(length);
+		if (bytes.length < length) {
+			throw new EOFException("Connection closed before the end of the body.");
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reads a line ending in a line feed, without the line feed or a carriage
+	 * return before it.
+	 *
+	 * @param response the stream to read
+	 * @return the line, or {@code null} if the connection was closed first
+	 * @throws IOException if unable to read
+	 */
+	private static String readLine(InputStream response) throws IOException {
+
+		ByteArrayOutputStream line = new ByteArrayOutputStream(80);
+		int b;
+		while ((b = response.read()) != '\n') {
+			if (b < 0) {
+				return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+			}
+			line.write(b);
+		}
+
+		byte[] bytes = line.toByteArray();
+		int end = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+		return new String(bytes, 0, end, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses the length of a body or chunk.
+	 *
+	 * @param value the length as text
+	 * @param radix 10 for a Content-Length header, or 16 for a chunk
+	 * @return the length
+	 * @throws IOException if the length is not a number, negative, or too large
+	 */
+	private static int parseLength(String value, int radix) throws IOException {
+		try {
+			long length = Long.parseLong(value.trim(), radix);
+			if (length < 0 || length > Integer.MAX_VALUE - 8) {
+				throw new IOException("Unsupported length: " + value);
+			}
+			return (int) length;
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid length: " + value, e);
+		}
+	}
+
+	/**
+	 * Returns the first value of a header field, ignoring the case of its name.
+	 *
+	 * @param headers the HTTP/1.1 headers to search
+	 * @param name    the name of the header field
+	 * @return the first value, or {@code null} if there is no such field
+	 */
+	private static String getHeader(Map<String, List<String>> headers, String name) {
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+				return entry.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether the server allows the connection to be used again after a
+	 * response. HTTP/1.1 connections stay open unless the server says to close
+	 * them, and older ones only stay open if the server says to keep them alive.
+	 *
+	 * @param headers the HTTP headers of the response
+	 * @return {@code true} if the connection can be used again
+	 */
+	private static boolean isPersistent(Map<String, List<String>> headers) {
+		String connection = getHeader(headers, "Connection");
+		if (headers.get(null).get(0).startsWith("HTTP/1.1")) {
+			return connection == null || !connection.toLowerCase().contains("close");
+		}
+		return connection != null && connection.toLowerCase().contains("keep-alive");
+	}
+
+	/**
+	 * Returns the connections kept open between requests, to check how often
+	 * they are used again.
 	 *
-	 * @param response the reader created from a socket connection
-	 * @return a list of lines read from the socket reader
-	 * @throws IOException from {@link BufferedReader#lines()}
+	 * @return the shared connection pool
 	 */
-	public static List<String> getContent(BufferedReader response) throws IOException {
-		return response.lines().collect(Collectors.toList());
+	public static ConnectionPool getPool() {
+		return POOL;
 	}
 }
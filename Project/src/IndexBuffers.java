@@ -0,0 +1,130 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Gives each worker thread its own local index to add words to, instead of a
+ * new index for every file or page. A local index is only handed off once it
+ * holds at least a threshold of positions, so the shared index is locked and a
+ * new local index is created once per large batch rather than once per small
+ * file. Whatever is left in the local indexes is handed off by
+ * {@link #flush()} once the workers are done.
+ *
+ * This class is thread-safe, as long as {@link #flush()} is only called once
+ * no worker is adding to its local index.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class IndexBuffers {
+
+	/**
+	 * The default number of positions a local index holds before it is handed
+	 * off.
+	 */
+	public static final int DEFAULT_THRESHOLD = 1 << 20;
+
+	/**
+	 * The local index of each thread.
+	 */
+	private final ThreadLocal<Buffer> local;
+
+	/**
+	 * Every local index created, so the rest can be handed off at the end.
+	 */
+	private final Queue<Buffer> buffers;
+
+	/**
+	 * The number of positions a local index holds before it is handed off.
+	 */
+	private final int threshold;
+
+	/**
+	 * Receives each local index handed off, such as by adding it to the shared
+	 * index.
+	 */
+	private final Consumer<InvertedIndex> flush;
+
+	/**
+	 * Initializes the local indexes.
+	 *
+	 * @param threshold the number of positions a local index holds before it is
+	 *                  handed off
+	 * @param flush     receives each local index handed off, which is never used
+	 *                  again afterwards
+	 */
+	public IndexBuffers(int threshold, Consumer<InvertedIndex> flush) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("The flush threshold must be positive.");
+		}
+		this.threshold = threshold;
+		this.flush = flush;
+		this.buffers = new ConcurrentLinkedQueue<>();
+		this.local = ThreadLocal.withInitial(() -> {
+			Buffer buffer = new Buffer();
+			this.buffers.add(buffer);
+			return buffer;
+		});
+	}
+
+	/**
+	 * Returns the local index of the calling thread.
+	 *
+	 * @return the index to add words to
+	 */
+	public InvertedIndex get() {
+		return this.local.get().index;
+	}
+
+	/**
+	 * Records positions added to the local index of the calling thread, handing
+	 * it off if it has reached the threshold.
+	 *
+	 * @param positions the number of positions just added
+	 */
+	public void added(int positions) {
+
+		Buffer buffer = this.local.get();
+		buffer.positions += positions;
+		if (buffer.positions >= this.threshold) {
+			InvertedIndex full = buffer.index;
+			buffer.index = new InvertedIndex();
+			buffer.positions = 0;
+			this.flush.accept(full);
+		}
+	}
+
+	/**
+	 * Hands off every local index that has words added. Must only be called once
+	 * the workers are done adding.
+	 */
+	public void flush() {
+
+		for (Buffer buffer : this.buffers) {
+			if (buffer.index.getVersion() > 0) {
+				InvertedIndex rest = buffer.index;
+				buffer.index = new InvertedIndex();
+				buffer.positions = 0;
+				this.flush.accept(rest);
+			}
+		}
+	}
+
+	/**
+	 * The local index of a single thread.
+	 */
+	private static class Buffer {
+
+		/**
+		 * The index words are added to.
+		 */
+		private InvertedIndex index = new InvertedIndex();
+
+		/**
+		 * The number of positions added since the index was created.
+		 */
+		private long positions = 0;
+	}
+}
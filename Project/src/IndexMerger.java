@@ -0,0 +1,105 @@
+/**
+ * Combines the partial indexes built by separate tasks into a single index.
+ * Partial indexes are merged pairwise as they arrive, like the levels of a
+ * binary tree: a partial index built from one task waits at the bottom level
+ * until another arrives, the two are merged and move up a level, and so on.
+ * Merges at different levels run at the same time on whichever threads add
+ * the partial indexes, and every position is copied only once per level.
+ * Once every partial index is added, the rest of the tree is merged and the
+ * result is added to the shared index all at once, so the shared index is only
+ * written to a single time.
+ *
+ * This class is thread-safe.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class IndexMerger {
+
+	/**
+	 * The most levels in the tree, enough for any number of partial indexes.
+	 */
+	private static final int LEVELS = 32;
+
+	/**
+	 * The shared index the result is added to.
+	 */
+	private final InvertedIndex ind;
+
+	/**
+	 * The partial index waiting to be merged at each level, or {@code null} if
+	 * there is none. The partial index at a level was built from about twice as
+	 * many tasks as the one below it.
+	 */
+	private final InvertedIndex[] levels;
+
+	/**
+	 * Initializes an empty tree.
+	 *
+	 * @param ind the shared index the result is added to
+	 */
+	public IndexMerger(InvertedIndex ind) {
+		this.ind = ind;
+		this.levels = new InvertedIndex[LEVELS];
+	}
+
+	/**
+	 * Adds a partial index to the tree, merging it with the partial indexes
+	 * already waiting at each level it reaches. The merging is done by the
+	 * calling thread without holding any lock.
+	 *
+	 * @param part the partial index, which must not be used afterwards
+	 */
+	public void add(InvertedIndex part) {
+
+		InvertedIndex merged = part;
+		for (int level = 0; level < LEVELS - 1; level++) {
+			InvertedIndex other;
+			synchronized (this.levels) {
+				other = this.levels[level];
+				this.levels[level] = other == null ? merged : null;
+			}
+			if (other == null) {
+				return;
+			}
+			other.addAll(merged);
+			merged = other;
+		}
+
+		synchronized (this.levels) {
+			if (this.levels[LEVELS - 1] != null) {
+				merged.addAll(this.levels[LEVELS - 1]);
+			}
+			this.levels[LEVELS - 1] = merged;
+		}
+	}
+
+	/**
+	 * Merges the partial indexes left in the tree and adds the result to the
+	 * shared index. Must only be called after every partial index is added.
+	 * The tree is empty afterwards.
+	 */
+	public void finish() {
+
+		InvertedIndex merged = null;
+		synchronized (this.levels) {
+			/* The largest partial index is at the top, so merge upwards into it. */
+			for (int level = 0; level < LEVELS; level++) {
+				InvertedIndex part = this.levels[level];
+				this.levels[level] = null;
+				if (part != null && merged != null) {
+					part.addAll(merged);
+				}
+				if (part != null) {
+					merged = part;
+				}
+			}
+		}
+
+		if (merged != null) {
+			this.ind.addAll(merged);
+		}
+	}
+}
@@ -1,11 +1,10 @@
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -21,29 +20,48 @@ import java.util.TreeSet;
 public class InvertedIndex {
 
 	/**
-	 * Stores mappings of parsed words found, path, and it's indices found in that
-	 * path.
+	 * Stores mappings of parsed words found, path ids, and it's compressed indices
+	 * found in that path.
 	 */
-	private Map<String, Map<String, Set<Integer>>> map;
+	protected final Map<String, TermPostings> map;
 
 	/**
-	 * Stores mappings of the file names and total number of words.
+	 * Stores the parsed words found in sorted order, so words that start with a
+	 * prefix can be found without looking at every word.
 	 */
-	private Map<String, Integer> wCountMap;
+	protected final NavigableSet<String> terms;
 
 	/**
-	 * Stores mappings of the words and their CompareSearch results.
+	 * Stores the path ids and total number of words of each path.
 	 */
-	private Map<String, List<CompareSearch>> compareMap;
+	protected final DocumentTable documents;
+
+	/**
+	 * The number of times words have been added, used to tell whether results
+	 * computed earlier are out of date.
+	 */
+	private volatile long version;
 
 	/**
 	 * Initializes the argument maps.
 	 */
 	public InvertedIndex() {
+		this(new HashMap<>(), new TreeSet<>(), new ArrayDocumentTable());
+	}
+
+	/**
+	 * Initializes the index with the provided maps, so subclasses can use
+	 * concurrent implementations.
+	 *
+	 * @param map       the empty map of words and their postings
+	 * @param terms     the empty sorted set of words
+	 * @param documents the empty table of path ids and word counts
+	 */
+	protected InvertedIndex(Map<String, TermPostings> map, NavigableSet<String> terms, DocumentTable documents) {
 
-		this.map = new HashMap<>();
-		this.wCountMap = new HashMap<>();
-		this.compareMap = new HashMap<>();
+		this.map = map;
+		this.terms = terms;
+		this.documents = documents;
 	}
 
 	/**
@@ -56,19 +74,17 @@ public class InvertedIndex {
 	public void addToMap(String word, String path, int position) {
 
 		if (!this.map.containsKey(word)) {
-			this.map.put(word, new HashMap<String, Set<Integer>>());
-		}
-
-		/* If the word is only thing in the map, add new path. */
-		if (!this.map.get(word).containsKey(path)) {
-			this.map.get(word).put(path, new HashSet<Integer>());
+			this.map.put(word, new TermPostings());
+			this.terms.add(word);
 		}
 
 		/* Add word, path, and position to map. */
-		this.map.get(word).get(path).add(position);
+		int document = this.documents.add(path);
+		this.map.get(word).add(document).add(position);
 
 		/* Add path and position to count of words per file map. */
-		this.wCountMap.put(path, position);
+		this.documents.updateCount(document, position);
+		updateVersion();
 	}
 
 	/**
@@ -77,32 +93,65 @@ public class InvertedIndex {
 	 * @param o other InvertedIndex to be added to.
 	 */
 	public void addAll(InvertedIndex o) {
+		addAll(o, 0);
+	}
+
+	/**
+	 * Adds all available keys and key sets to a map, shifting every position of
+	 * the other index by an offset. Used to add an index built from a later part
+	 * of the same paths, where positions were counted from the start of that part.
+	 *
+	 * @param o      other InvertedIndex to be added to.
+	 * @param offset the number of positions before the part the other index was
+	 *               built from
+	 */
+	public void addAll(InvertedIndex o, int offset) {
+
+		/* Path ids in the other index become path ids in this index. */
+		int[] remap = new int[o.documents.size()];
+		for (int id = 0; id < remap.length; id++) {
+			remap[id] = this.documents.add(o.documents.getLocation(id));
+			this.documents.updateCount(remap[id], o.documents.getCount(id) + offset);
+		}
 
 		for (String key : o.map.keySet()) {
-			if (!this.map.containsKey(key)) {
-				// get everything it's mapping too, not just one thing
-				this.map.put(key, o.map.get(key));
-			} else {
-				// else, go through the whole map and check
-				for (String location : o.map.get(key).keySet()) {
-					if (!this.map.get(key).containsKey(location)) {
-						this.map.get(key).put(location, o.map.get(key).get(location));
-					} else {
-						this.map.get(key).get(location).addAll(o.map.get(key).get(location));
-					}
-				}
-			}
+			mergePostings(key, o.map.get(key), remap, offset);
 		}
+		updateVersion();
+	}
 
-		for (String key : o.wCountMap.keySet()) {
-			if (!this.wCountMap.containsKey(key)) {
-				this.wCountMap.put(key, o.wCountMap.get(key));
-			} else {
-				if (this.wCountMap.get(key) < o.wCountMap.get(key)) {
-					this.wCountMap.put(key, o.wCountMap.get(key));
-				}
-			}
+	/**
+	 * Returns the version of this index, which increases every time words are
+	 * added. Results computed at one version are only valid at that version.
+	 *
+	 * @return the current version of this index
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Increases the version of this index after words are added.
+	 */
+	protected void updateVersion() {
+		this.version++;
+	}
+
+	/**
+	 * Adds all of the postings of a word from another index.
+	 *
+	 * @param word   the word being added
+	 * @param other  the postings of the word in the other index
+	 * @param remap  the path id in this index for each path id of the other index
+	 * @param offset the amount added to each of the other positions
+	 */
+	protected void mergePostings(String word, TermPostings other, int[] remap, int offset) {
+
+		if (!this.map.containsKey(word)) {
+			this.map.put(word, new TermPostings());
+			this.terms.add(word);
 		}
+		this.map.get(word).addAll(other, remap, offset);
 	}
 
 	/**
@@ -112,16 +161,16 @@ public class InvertedIndex {
 	 */
 	public Map<String, Map<String, Set<Integer>>> getMap() {
 
-		Map<String, Map<String, Set<Integer>>> sortedMap = new TreeMap<>(this.map);
-		for (String s : sortedMap.keySet()) {
-			Map<String, Set<Integer>> innerMap = new TreeMap<String, Set<Integer>>(sortedMap.get(s));
-			for (String s1 : innerMap.keySet()) {
-				Set<Integer> positions = new TreeSet<Integer>(innerMap.get(s1));
-				innerMap.put(s1, positions);
+		Map<String, Map<String, Set<Integer>>> sortedMap = new TreeMap<>();
+		for (String s : this.map.keySet()) {
+			TermPostings postings = getPostings(s);
+			Map<String, Set<Integer>> innerMap = new TreeMap<String, Set<Integer>>();
+			for (int i = 0; i < postings.size(); i++) {
+				innerMap.put(this.documents.getLocation(postings.getDocument(i)), decode(s, postings.getPostings(i)));
 			}
 			sortedMap.put(s, innerMap);
 		}
-		return new TreeMap<>(sortedMap);
+		return sortedMap;
 	}
 
 	/**
@@ -131,30 +180,18 @@ public class InvertedIndex {
 	 */
 	public Map<String, Integer> getCountMap() {
 
-		Map<String, Integer> sortedCountMap = new TreeMap<>(this.wCountMap);
-		return new TreeMap<>(sortedCountMap);
-	}
-
-	/**
-	 * Retrieving map with the query and all instances of that word with regards to
-	 * its location, score, and count.
-	 * 
-	 * @return mapping query and instances of where the word is found
-	 */
-	public Map<String, List<CompareSearch>> getCompareMap() {
-
-		Map<String, List<CompareSearch>> sortedCompareMap = new TreeMap<>(this.compareMap);
-		return new TreeMap<>(sortedCompareMap);
+		return this.documents.getCounts();
 	}
 
 	/**
 	 * Initializes new ArrayList of CompareSearches. Checks if from the Driver,
 	 * there is an exact flag If there is one, do an exact search, else, partial.
-	 * Sorts the CompareSearch list.
+	 * Searching never changes the index, so the sorted CompareSearch list is
+	 * stored by the caller, such as in {@link QueryResults}.
 	 * 
 	 * @param line  word that is being queried
 	 * @param exact check whether exact flag provided
-	 * @return 
+	 * @return sorted list of the results of the query
 	 */
 	public List<CompareSearch> search(String line, boolean exact) {
 
@@ -164,10 +201,39 @@ public class InvertedIndex {
 		} else {
 			partialSearch(line, comparisons);
 		}
-		Collections.sort(comparisons);
 		return comparisons;
 	}
 
+	/**
+	 * Searches for a single page of the best results. Only the results up to the
+	 * end of the page are kept while scoring, and locations that cannot reach
+	 * them are skipped using {@link MaxScoreSearch}, so this is cheaper than
+	 * scoring and sorting every result when only the first few are needed. Stops
+	 * early if run as submitted work that was cancelled.
+	 * 
+	 * @param line   word that is being queried
+	 * @param exact  check whether exact flag provided
+	 * @param k      the maximum number of results to return
+	 * @param offset the number of best results to skip
+	 * @return sorted list of at most k results, starting after the offset
+	 */
+	public List<CompareSearch> search(String line, boolean exact, int k, int offset) {
+
+		if (line.isBlank() || k <= 0) {
+			return new ArrayList<>();
+		}
+
+		List<TermPostings> postings = new ArrayList<>();
+		for (String word : findWords(line, exact)) {
+			WorkQueue.checkCancelled();
+			postings.add(getPostings(word));
+		}
+
+		TopResults top = new TopResults((int) Math.min((long) k + Math.max(offset, 0), Integer.MAX_VALUE));
+		new MaxScoreSearch(postings, this.documents).search(top);
+		return top.getResults(offset);
+	}
+
 	/**
 	 * Perform an exact search with a given query.
 	 * 
@@ -176,14 +242,15 @@ public class InvertedIndex {
 	 */
 	public void exactSearch(String line, List<CompareSearch> comps) {
 
-		if (!line.isBlank() || !line.isEmpty() && !this.compareMap.containsKey(line)) {
-			for (String word : Arrays.asList(line.split(" "))) {
-				if (this.map.containsKey(word)) {
-					addToComps(word, comps);
-				}
+		if (!line.isEmpty()) {
+			ScoreAccumulator scores = new ScoreAccumulator(this.documents.size());
+			for (String word : findWords(line, true)) {
+				WorkQueue.checkCancelled();
+				addToScores(word, scores);
 			}
+			addToComps(scores, comps);
 		}
-		this.compareMap.put(line, comps);
+		Collections.sort(comps);
 	}
 
 	/**
@@ -194,33 +261,76 @@ public class InvertedIndex {
 	 */
 	public void partialSearch(String line, List<CompareSearch> comps) {
 
-		if (!line.isBlank() || !line.isEmpty() && !this.compareMap.containsKey(line)) {
-			for (String query : Arrays.asList(line.split(" "))) {
-				for (String word : this.map.keySet()) {
-					if (word.startsWith(query)) {
-						addToComps(word, comps);
+		if (!line.isEmpty()) {
+			ScoreAccumulator scores = new ScoreAccumulator(this.documents.size());
+			for (String word : findWords(line, false)) {
+				WorkQueue.checkCancelled();
+				addToScores(word, scores);
+			}
+			addToComps(scores, comps);
+		}
+		Collections.sort(comps);
+	}
+
+	/**
+	 * Finds the words in the index matched by a query. An exact search matches
+	 * each query word itself, and a partial search matches every word starting
+	 * with a query word. A word matched by more than one query word is listed once
+	 * per query word.
+	 * 
+	 * @param line  word that is being queried
+	 * @param exact check whether exact flag provided
+	 * @return list of the words in the index matched by the query
+	 */
+	public List<String> findWords(String line, boolean exact) {
+
+		List<String> words = new ArrayList<>();
+		for (String query : Arrays.asList(line.split(" "))) {
+			if (exact) {
+				if (this.map.containsKey(query)) {
+					words.add(query);
+				}
+			} else {
+				/* Words starting with the query are sorted right after it. */
+				for (String word : this.terms.tailSet(query)) {
+					if (!word.startsWith(query)) {
+						break;
 					}
+					words.add(word);
 				}
 			}
 		}
-		this.compareMap.put(line, comps);
+		return words;
 	}
 
 	/**
-	 * Adds to comparison map in which
+	 * Adds the number of times a word is found in each location to the scores of
+	 * a query.
 	 * 
-	 * @param word  word that is being queried
-	 * @param comps list of CompareSearch (location, count, and score) of a query
+	 * @param word   word that is being queried
+	 * @param scores the matches found so far for each location of a query
 	 */
-	public void addToComps(String word, List<CompareSearch> comps) {
-
-		Collection<String> locations = getLocations(word);
-		for (String loc : locations) {
-			if (!checkLocations(comps, word, loc)) {
-				int count = getPositions(word, loc).size();
-				double totalwords = this.wCountMap.get(loc);
-				comps.add(new CompareSearch(loc, count / totalwords, count));
-			}
+	public void addToScores(String word, ScoreAccumulator scores) {
+
+		TermPostings postings = getPostings(word);
+		for (int i = 0; i < postings.size(); i++) {
+			scores.add(postings.getDocument(i), postings.getCount(i));
+		}
+	}
+
+	/**
+	 * Creates one CompareSearch for each location that matched a query.
+	 * 
+	 * @param scores the matches found for each location of a query
+	 * @param comps  list of CompareSearch (location, count, and score) of a query
+	 */
+	public void addToComps(ScoreAccumulator scores, List<CompareSearch> comps) {
+
+		for (int i = 0; i < scores.size(); i++) {
+			int document = scores.getDocument(i);
+			int count = scores.getCount(document);
+			double totalwords = this.documents.getCount(document);
+			comps.add(new CompareSearch(document, this.documents.getLocation(document), count / totalwords, count));
 		}
 	}
 
@@ -233,8 +343,13 @@ public class InvertedIndex {
 	 */
 	public Set<String> getLocations(String word) {
 
-		if (this.map.containsKey(word)) {
-			return Collections.unmodifiableSet(this.map.get(word).keySet());
+		TermPostings postings = getPostings(word);
+		if (postings != null) {
+			Set<String> locations = new TreeSet<>();
+			for (int i = 0; i < postings.size(); i++) {
+				locations.add(this.documents.getLocation(postings.getDocument(i)));
+			}
+			return Collections.unmodifiableSet(locations);
 		}
 
 		return Collections.unmodifiableSet(new TreeSet<>());
@@ -251,45 +366,39 @@ public class InvertedIndex {
 	 */
 	public Set<Integer> getPositions(String word, String location) {
 
-		if (this.map.containsKey(word)) {
-			if (this.map.get(word).containsKey(location)) {
-				return Collections.unmodifiableSet(this.map.get(word).get(location));
+		int document = this.documents.getId(location);
+		TermPostings postings = getPostings(word);
+		if (postings != null && document >= 0) {
+			int index = postings.find(document);
+			if (index >= 0) {
+				return Collections.unmodifiableSet(decode(word, postings.getPostings(index)));
 			}
 		}
 		return Collections.unmodifiableSet(new TreeSet<>());
 	}
 
 	/**
-	 * Checks if the location is already in the list of CompareSearches.
-	 * 
-	 * @param comps    list of comparisons for the word
-	 * @param word     word that is being queried
-	 * @param location the location in which the word can be found
-	 * 
-	 * @return true if the location is in the comps list, false if it is not
+	 * Returns the postings of a word for reading. The location ids and counts of
+	 * the postings returned must not change while they are being read.
+	 *
+	 * @param word word that is being queried
+	 * @return the postings of the word, or {@code null} if the word is not found
 	 */
-	public boolean checkLocations(List<CompareSearch> comps, String word, String location) {
-
-		for (CompareSearch comp : comps) {
-			if (comp.getLocation().equals(location)) {
-				updateSearch(word, comp, location);
-				return true;
-			}
-		}
-		return false;
+	protected TermPostings getPostings(String word) {
+		return this.map.get(word);
 	}
 
 	/**
-	 * Updates the CompareSearch object.
-	 * 
-	 * @param comp     CompareSearch object that is being updated
-	 * @param word     word that is being queried
-	 * @param location the location in which the word can be found
+	 * Decodes a compressed posting list into a sorted set of positions.
+	 *
+	 * @param word     the word the posting list belongs to
+	 * @param postings the posting list to decode
+	 * @return a sorted set of the positions in the posting list
 	 */
-	public void updateSearch(String word, CompareSearch comp, String location) {
+	protected Set<Integer> decode(String word, PostingList postings) {
 
-		int count = getPositions(word, location).size();
-		double totalwords = wCountMap.get(location);
-		CompareSearch.updateSearch(comp, count, totalwords);
+		Set<Integer> positions = new TreeSet<>();
+		postings.forEach(positions::add);
+		return positions;
 	}
 }
@@ -4,7 +4,6 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.TreeSet;
 
 /**
  * A thread-safe search results builder.
@@ -51,24 +50,43 @@ public class InvertedIndexBuilder {
 	 * @param path the path to be read from
 	 * @param ind     the class that holds the map to create an Inverted Index, add
 	 *                to this map
+	 * @return the number of positions in the file
 	 * @throws IOException 
 	 */
-	public void queryFileParse(Path path, InvertedIndex ind) throws IOException {
+	public int queryFileParse(Path path, InvertedIndex ind) throws IOException {
 		
 		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
 			String curr;
+			String location = path.toString();
 			int position = 0;
 			while ((curr = reader.readLine()) != null) {
-				String[] parsed = TextParser.parse(curr);
-				TreeSet<String> stems = null;
-				for (String word : parsed) {
-					stems = TextFileStemmer.uniqueStems(word);
-					position++;
-					for (String stem : stems) {
-						ind.addToMap(stem, path.toString(), position);
-					}
-				}
+				position = parseLine(curr, location, position, ind);
 			}
+			return position;
 		}
 	}
+
+	/**
+	 * Sends the stems of a single line, their positions, and the path to Inverted
+	 * Index map.
+	 *
+	 * @param line     the line to parse and stem
+	 * @param location the path the line was read from
+	 * @param position the position of the last word before this line
+	 * @param ind      the class that holds the map to create an Inverted Index, add
+	 *                 to this map
+	 * @return the position of the last word of this line
+	 */
+	public static int parseLine(String line, String location, int position, InvertedIndex ind) {
+
+		String[] parsed = TextParser.parse(line);
+		for (String word : parsed) {
+			position++;
+			/* Parsed words are already clean, so each one is stemmed directly. */
+			if (!word.isEmpty()) {
+				ind.addToMap(TextFileStemmer.stem(word), location, position);
+			}
+		}
+		return position;
+	}
 }
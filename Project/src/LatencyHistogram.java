@@ -0,0 +1,177 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many recorded durations fall into each of a fixed set of ranges,
+ * so percentiles can be reported without keeping every value. Durations below
+ * 32 nanoseconds each have their own range, and every power of two above that
+ * is split into 32 equal ranges, so a reported value is never more than about
+ * 3% above the true one, whether it is a few microseconds or several minutes.
+ * Recording a value only increments a counter and never allocates.
+ *
+ * This class is thread-safe.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of bits of each value kept exactly.
+	 */
+	private static final int SUB_BITS = 5;
+
+	/**
+	 * The number of ranges each power of two is split into.
+	 */
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	/**
+	 * The number of times a value was recorded in each range.
+	 */
+	private final AtomicLongArray counts;
+
+	/**
+	 * The number of values recorded.
+	 */
+	private final LongAdder total;
+
+	/**
+	 * The sum of the values recorded.
+	 */
+	private final LongAdder sum;
+
+	/**
+	 * Initializes an empty histogram.
+	 */
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray((Long.SIZE - SUB_BITS) * SUB_COUNT);
+		this.total = new LongAdder();
+		this.sum = new LongAdder();
+	}
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos the duration in nanoseconds, where negative values count as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		this.counts.incrementAndGet(index(value));
+		this.total.increment();
+		this.sum.add(value);
+	}
+
+	/**
+	 * Returns the number of durations recorded.
+	 *
+	 * @return number of durations recorded
+	 */
+	public long getCount() {
+		return this.total.sum();
+	}
+
+	/**
+	 * Returns the average duration recorded.
+	 *
+	 * @return the average in nanoseconds, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : this.sum.sum() / (double) count;
+	}
+
+	/**
+	 * Returns a duration at least as long as the given percentage of the
+	 * durations recorded.
+	 *
+	 * @param percentile the percentage of durations, between 0 and 100
+	 * @return the upper end of the range holding the percentile in nanoseconds,
+	 *         or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+
+		long[] snapshot = new long[this.counts.length()];
+		long count = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = this.counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return highest(i);
+			}
+		}
+		return highest(snapshot.length - 1);
+	}
+
+	/**
+	 * Returns the longest duration recorded, to within the precision of its
+	 * range.
+	 *
+	 * @return the upper end of the highest range used in nanoseconds, or 0 if
+	 *         nothing was recorded
+	 */
+	public long getMax() {
+
+		for (int i = this.counts.length() - 1; i >= 0; i--) {
+			if (this.counts.get(i) > 0) {
+				return highest(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the count, average, median, 90th and 99th percentiles, and maximum
+	 * in milliseconds.
+	 *
+	 * @return a single line describing the durations recorded
+	 */
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms", getCount(),
+				getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(90) / 1e6, getPercentile(99) / 1e6,
+				getMax() / 1e6);
+	}
+
+	/**
+	 * Returns the range a value is counted in.
+	 *
+	 * @param value the value, at least 0
+	 * @return the index of the range
+	 */
+	private static int index(long value) {
+
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+	}
+
+	/**
+	 * Returns the largest value counted in a range.
+	 *
+	 * @param index the index of the range
+	 * @return the largest value in the range
+	 */
+	private static long highest(int index) {
+
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_COUNT - 1;
+		long top = SUB_COUNT + index % SUB_COUNT;
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses large text files in separate chunks that can be added to an index in
+ * parallel. Files are split only right after a newline, so every chunk holds
+ * whole lines and is parsed exactly as if the file were read line by line. Each
+ * chunk is memory-mapped and counts its positions from 0, and the number of
+ * positions in each chunk is returned so positions can be shifted to match
+ * reading the whole file in order.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class MappedFileParser {
+
+	/**
+	 * The number of bytes read at a time while looking for a newline.
+	 */
+	private static final int SCAN_SIZE = 64 * 1024;
+
+	/**
+	 * Splits a file into chunks of about the requested size, each ending right
+	 * after a newline or at the end of the file.
+	 *
+	 * @param path      the file to split
+	 * @param chunkSize the minimum number of bytes in each chunk except the last
+	 * @return the start and end byte offsets of each chunk, in order
+	 * @throws IOException if an IO error occurs
+	 */
+	public static List<long[]> split(Path path, long chunkSize) throws IOException {
+
+		List<long[]> chunks = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+			long start = 0;
+
+			while (start < size) {
+				long end = start + chunkSize;
+				if (end >= size) {
+					end = size;
+				} else {
+					end = nextLine(channel, end, size, buffer);
+				}
+				chunks.add(new long[] { start, end });
+				start = end;
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * Sends stems, positions, and path to Inverted Index map for a single chunk of
+	 * a file. Positions are counted from 0 at the start of the chunk.
+	 *
+	 * @param path     the file to read from
+	 * @param start    the offset of the first byte of the chunk
+	 * @param end      the offset after the last byte of the chunk
+	 * @param location the path to add to the index
+	 * @param ind      the class that holds the map to create an Inverted Index, add
+	 *                 to this map
+	 * @return the number of positions in the chunk
+	 * @throws IOException if an IO error occurs or the chunk is not valid UTF-8
+	 */
+	public static int parse(Path path, long start, long end, String location, InvertedIndex ind)
+			throws IOException {
+
+		if (end - start > Integer.MAX_VALUE) {
+			throw new IOException("Chunk too large to map: " + path);
+		}
+
+		CharBuffer text;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			text = StandardCharsets.UTF_8.newDecoder().decode(mapped);
+		}
+
+		/* Same line endings as BufferedReader.readLine. */
+		char[] chars = text.array();
+		int offset = text.arrayOffset() + text.position();
+		int limit = text.arrayOffset() + text.limit();
+		int position = 0;
+		int lineStart = offset;
+		for (int i = offset; i < limit; i++) {
+			char c = chars[i];
+			if (c == '\n' || c == '\r') {
+				position = InvertedIndexBuilder.parseLine(new String(chars, lineStart, i - lineStart), location,
+						position, ind);
+				if (c == '\r' && i + 1 < limit && chars[i + 1] == '\n') {
+					i++;
+				}
+				lineStart = i + 1;
+			}
+		}
+		if (lineStart < limit) {
+			position = InvertedIndexBuilder.parseLine(new String(chars, lineStart, limit - lineStart), location,
+					position, ind);
+		}
+		return position;
+	}
+
+	/**
+	 * Finds the offset right after the first newline at or after an offset.
+	 *
+	 * @param channel the file to search
+	 * @param from    the offset to start searching at
+	 * @param size    the size of the file
+	 * @param buffer  reused to read the file
+	 * @return the offset after the newline, or the size of the file if there is
+	 *         none
+	 * @throws IOException if an IO error occurs
+	 */
+	private static long nextLine(FileChannel channel, long from, long size, ByteBuffer buffer) throws IOException {
+
+		long position = from;
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+}
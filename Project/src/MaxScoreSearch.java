@@ -0,0 +1,209 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the best results of a query one location at a time using the MaxScore
+ * algorithm. Each matched word has an upper bound on the score it can add to any
+ * location. Once enough results are found, words whose combined upper bounds
+ * cannot reach the worst result kept are only used to finish scoring locations
+ * found through other words, and locations that cannot reach the worst result
+ * kept are skipped before they are fully scored.
+ *
+ * The results are the same as scoring every location, because a location is
+ * only skipped when its score is certain to be lower than a result already
+ * kept.
+ *
+ * Warning: This class is not thread-safe. Each search should use its own
+ * instance, and the postings must not change while searching.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class MaxScoreSearch {
+
+	/**
+	 * Allowed rounding difference between a sum of upper bounds and a score.
+	 */
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * The number of locations scored between checks for cancellation, minus one.
+	 */
+	private static final int CHECK_MASK = 4095;
+
+	/**
+	 * The cursors of the matched words, sorted by increasing upper bound.
+	 */
+	private final Cursor[] cursors;
+
+	/**
+	 * The sum of the upper bounds of each cursor and every cursor before it.
+	 */
+	private final double[] bounds;
+
+	/**
+	 * The location ids, word counts, and paths of the index being searched.
+	 */
+	private final DocumentTable documents;
+
+	/**
+	 * Initializes a search over the postings of the matched words.
+	 *
+	 * @param postings  the postings of each matched word, once per time the word
+	 *                  was matched
+	 * @param documents the location ids, word counts, and paths of the index
+	 */
+	public MaxScoreSearch(List<TermPostings> postings, DocumentTable documents) {
+		this.documents = documents;
+		this.cursors = new Cursor[postings.size()];
+		for (int i = 0; i < this.cursors.length; i++) {
+			this.cursors[i] = new Cursor(postings.get(i), postings.get(i).getMaxScore(documents));
+		}
+		Arrays.sort(this.cursors, Comparator.comparingDouble(cursor -> cursor.maxScore));
+
+		this.bounds = new double[this.cursors.length];
+		double sum = 0;
+		for (int i = 0; i < this.cursors.length; i++) {
+			sum += this.cursors[i].maxScore;
+			this.bounds[i] = sum;
+		}
+	}
+
+	/**
+	 * Offers every location that could be one of the best results. Stops early if
+	 * run as submitted work that was cancelled.
+	 *
+	 * @param top the best results found so far
+	 * @throws java.util.concurrent.CancellationException if the work running the
+	 *                                                    search was cancelled
+	 * @see WorkQueue#checkCancelled()
+	 */
+	public void search(TopResults top) {
+
+		/* Cursors before this index cannot reach the worst result on their own. */
+		int essential = 0;
+		int scored = 0;
+
+		while (essential < this.cursors.length) {
+			if ((++scored & CHECK_MASK) == 0) {
+				WorkQueue.checkCancelled();
+			}
+
+			int document = Integer.MAX_VALUE;
+			for (int i = essential; i < this.cursors.length; i++) {
+				document = Math.min(document, this.cursors[i].document());
+			}
+
+			if (document == Integer.MAX_VALUE) {
+				break;
+			}
+
+			int count = 0;
+			for (int i = essential; i < this.cursors.length; i++) {
+				if (this.cursors[i].document() == document) {
+					count += this.cursors[i].count();
+					this.cursors[i].next();
+				}
+			}
+
+			double totalwords = this.documents.getCount(document);
+			boolean skipped = false;
+			for (int i = essential - 1; i >= 0; i--) {
+				if (top.isFull() && count / totalwords + this.bounds[i] < top.getThreshold() - EPSILON) {
+					skipped = true;
+					break;
+				}
+
+				this.cursors[i].seek(document);
+				if (this.cursors[i].document() == document) {
+					count += this.cursors[i].count();
+				}
+			}
+
+			double score = count / totalwords;
+			if (skipped || !top.competes(score)) {
+				continue;
+			}
+
+			if (top.offer(new CompareSearch(document, this.documents.getLocation(document), score, count))
+					&& top.isFull()) {
+				while (essential < this.cursors.length
+						&& this.bounds[essential] < top.getThreshold() - EPSILON) {
+					essential++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Walks through the location ids of a single matched word in increasing
+	 * order.
+	 */
+	private static class Cursor {
+
+		/**
+		 * The postings of the matched word.
+		 */
+		private final TermPostings postings;
+
+		/**
+		 * The upper bound of the score this word adds to any location.
+		 */
+		private final double maxScore;
+
+		/**
+		 * The index of the current location id.
+		 */
+		private int index;
+
+		/**
+		 * Initializes a cursor at the first location id.
+		 *
+		 * @param postings the postings of the matched word
+		 * @param maxScore the upper bound of the score this word adds
+		 */
+		public Cursor(TermPostings postings, double maxScore) {
+			this.postings = postings;
+			this.maxScore = maxScore;
+			this.index = 0;
+		}
+
+		/**
+		 * Returns the current location id.
+		 *
+		 * @return the current location id, or {@link Integer#MAX_VALUE} if there are
+		 *         no more locations
+		 */
+		public int document() {
+			return this.index < this.postings.size() ? this.postings.getDocument(this.index) : Integer.MAX_VALUE;
+		}
+
+		/**
+		 * Returns the number of times the word is found in the current location.
+		 *
+		 * @return number of positions in the current location
+		 */
+		public int count() {
+			return this.postings.getCount(this.index);
+		}
+
+		/**
+		 * Moves to the next location id.
+		 */
+		public void next() {
+			this.index++;
+		}
+
+		/**
+		 * Moves to the first location id that is not smaller than the one provided.
+		 *
+		 * @param document the location id to move to
+		 */
+		public void seek(int document) {
+			this.index = this.postings.seek(document, this.index);
+		}
+	}
+}
@@ -0,0 +1,354 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Stores the positions of a word within a single location as a sorted set of
+ * compressed integers. Positions are delta-encoded against the previous
+ * position and written as variable-length bytes, so the common case of small
+ * gaps between positions costs one byte per position instead of a boxed
+ * {@link Integer} inside a hash set.
+ *
+ * Positions are expected to be added in increasing order, which only appends to
+ * the encoded bytes. Adding a position out of order is supported, but requires
+ * decoding and re-encoding the whole list.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class PostingList implements Iterable<Integer> {
+
+	/**
+	 * The initial number of bytes allocated for a new posting list.
+	 */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * Delta and variable-length encoded positions.
+	 */
+	private byte[] bytes;
+
+	/**
+	 * Number of bytes used in the encoded positions.
+	 */
+	private int length;
+
+	/**
+	 * Number of positions stored.
+	 */
+	private int size;
+
+	/**
+	 * The largest position stored.
+	 */
+	private int last;
+
+	/**
+	 * Initializes an empty posting list.
+	 */
+	public PostingList() {
+		this.bytes = new byte[INITIAL_CAPACITY];
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+	}
+
+	/**
+	 * Adds a position to this posting list if it is not already present.
+	 *
+	 * @param position the position to add, must not be negative
+	 * @return true if the position was added, false if it was already present
+	 */
+	public boolean add(int position) {
+
+		if (position < 0) {
+			throw new IllegalArgumentException("Positions must not be negative: " + position);
+		}
+
+		if (this.size == 0 || position > this.last) {
+			append(position);
+			return true;
+		}
+
+		int[] positions = toArray();
+		int index = Arrays.binarySearch(positions, position);
+		if (index >= 0) {
+			return false;
+		}
+
+		/* Out of order, insert the position and encode everything again. */
+		index = -(index + 1);
+		int[] inserted = new int[positions.length + 1];
+		System.arraycopy(positions, 0, inserted, 0, index);
+		inserted[index] = position;
+		System.arraycopy(positions, index, inserted, index + 1, positions.length - index);
+		encode(inserted, inserted.length);
+		return true;
+	}
+
+	/**
+	 * Adds all of the positions from another posting list to this one.
+	 *
+	 * @param o other posting list to be added from
+	 */
+	public void addAll(PostingList o) {
+		addAll(o, 0);
+	}
+
+	/**
+	 * Adds all of the positions from another posting list to this one, shifting
+	 * each of them by an offset. Used when the other positions were counted from
+	 * the start of a later part of the same location.
+	 *
+	 * @param o      other posting list to be added from
+	 * @param offset the amount added to each of the other positions
+	 */
+	public void addAll(PostingList o, int offset) {
+
+		if (o.size == 0) {
+			return;
+		}
+
+		if (this.size == 0 && offset == 0) {
+			this.bytes = Arrays.copyOf(o.bytes, Math.max(o.length, INITIAL_CAPACITY));
+			this.length = o.length;
+			this.size = o.size;
+			this.last = o.last;
+			return;
+		}
+
+		int[] first = new int[2];
+		readVarint(o.bytes, 0, first);
+
+		if (this.size == 0 || first[0] + offset > this.last) {
+			/* Only the first delta changes, the remaining bytes can be copied as is. */
+			int delta = first[0] + offset - this.last;
+			ensureCapacity(this.length + 5 + o.length - first[1]);
+			this.length = writeVarint(this.bytes, this.length, delta);
+			System.arraycopy(o.bytes, first[1], this.bytes, this.length, o.length - first[1]);
+			this.length += o.length - first[1];
+			this.size += o.size;
+			this.last = o.last + offset;
+			return;
+		}
+
+		/* Overlapping positions, merge both sorted lists without duplicates. */
+		int[] mine = toArray();
+		int[] theirs = o.toArray();
+		for (int i = 0; i < theirs.length; i++) {
+			theirs[i] += offset;
+		}
+		int[] merged = new int[mine.length + theirs.length];
+		int i = 0, j = 0, k = 0;
+		while (i < mine.length && j < theirs.length) {
+			if (mine[i] < theirs[j]) {
+				merged[k++] = mine[i++];
+			} else if (mine[i] > theirs[j]) {
+				merged[k++] = theirs[j++];
+			} else {
+				merged[k++] = mine[i++];
+				j++;
+			}
+		}
+		while (i < mine.length) {
+			merged[k++] = mine[i++];
+		}
+		while (j < theirs.length) {
+			merged[k++] = theirs[j++];
+		}
+		encode(merged, k);
+	}
+
+	/**
+	 * Returns the number of positions stored.
+	 *
+	 * @return number of positions in this posting list
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns whether there are any positions stored.
+	 *
+	 * @return true if this posting list has no positions
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns the largest position stored.
+	 *
+	 * @return the last position, or 0 if this posting list is empty
+	 */
+	public int last() {
+		return this.last;
+	}
+
+	/**
+	 * Decodes all of the positions into a sorted array.
+	 *
+	 * @return sorted array of positions
+	 */
+	public int[] toArray() {
+
+		int[] positions = new int[this.size];
+		PrimitiveIterator.OfInt iterator = iterator();
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = iterator.nextInt();
+		}
+		return positions;
+	}
+
+	/**
+	 * Returns an iterator that decodes the positions in increasing order.
+	 *
+	 * @return decoding iterator over the positions
+	 */
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		return new Decoder();
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * Appends a position larger than any position currently stored.
+	 *
+	 * @param position the position to append
+	 */
+	private void append(int position) {
+
+		ensureCapacity(this.length + 5);
+		this.length = writeVarint(this.bytes, this.length, position - this.last);
+		this.last = position;
+		this.size++;
+	}
+
+	/**
+	 * Replaces the encoded bytes with the provided sorted positions.
+	 *
+	 * @param positions sorted positions without duplicates
+	 * @param count     the number of positions to use from the array
+	 */
+	private void encode(int[] positions, int count) {
+
+		this.bytes = new byte[Math.max(count + 4, INITIAL_CAPACITY)];
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+		for (int i = 0; i < count; i++) {
+			append(positions[i]);
+		}
+	}
+
+	/**
+	 * Grows the encoded bytes if necessary.
+	 *
+	 * @param capacity the minimum number of bytes needed
+	 */
+	private void ensureCapacity(int capacity) {
+
+		if (capacity > this.bytes.length) {
+			this.bytes = Arrays.copyOf(this.bytes, Math.max(capacity, this.bytes.length * 2));
+		}
+	}
+
+	/**
+	 * Writes a non-negative value using 7 bits per byte, with the high bit set on
+	 * every byte except the last.
+	 *
+	 * @param bytes  the bytes to write to
+	 * @param offset the index of the first byte to write
+	 * @param value  the value to write
+	 * @return the index after the last byte written
+	 */
+	private static int writeVarint(byte[] bytes, int offset, int value) {
+
+		while ((value & ~0x7F) != 0) {
+			bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Reads a value written by {@link #writeVarint(byte[], int, int)}.
+	 *
+	 * @param bytes  the bytes to read from
+	 * @param offset the index of the first byte to read
+	 * @param result array where the value is stored at index 0 and the index after
+	 *               the last byte read is stored at index 1
+	 */
+	private static void readVarint(byte[] bytes, int offset, int[] result) {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[offset++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+
+		result[0] = value;
+		result[1] = offset;
+	}
+
+	/**
+	 * Decodes the positions one at a time without creating boxed integers.
+	 */
+	private class Decoder implements PrimitiveIterator.OfInt {
+
+		/**
+		 * Index of the next byte to decode.
+		 */
+		private int offset = 0;
+
+		/**
+		 * Number of positions decoded so far.
+		 */
+		private int decoded = 0;
+
+		/**
+		 * The last position decoded.
+		 */
+		private int previous = 0;
+
+		@Override
+		public boolean hasNext() {
+			return this.decoded < size;
+		}
+
+		@Override
+		public int nextInt() {
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[this.offset++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			this.decoded++;
+			this.previous += delta;
+			return this.previous;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the results of recent searches, keyed by the stemmed query, whether
+ * the search is exact, and the page of results requested. When the cache is
+ * full, the least recently used search is removed. Every result is stored with
+ * the version of the index it was computed from, and is treated as missing once
+ * the index has changed.
+ *
+ * This class is thread-safe.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class QueryCache {
+
+	/**
+	 * The default maximum number of searches cached.
+	 */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	/**
+	 * The cached searches, in order from least to most recently used.
+	 */
+	private final Map<Key, Entry> entries;
+
+	/**
+	 * The maximum number of searches cached.
+	 */
+	private final int capacity;
+
+	/**
+	 * The number of searches found in the cache.
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * The number of searches not found in the cache or out of date.
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Initializes a cache with the default capacity.
+	 */
+	public QueryCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param capacity the maximum number of searches cached
+	 */
+	public QueryCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The cache capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > QueryCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached results of a search if they were computed from the
+	 * current version of the index.
+	 *
+	 * @param query   the stemmed query
+	 * @param exact   whether the search is exact
+	 * @param k       the maximum number of results requested
+	 * @param offset  the number of best results skipped
+	 * @param version the current version of the index
+	 * @return the cached results, or {@code null} if not cached or out of date
+	 */
+	public List<CompareSearch> get(String query, boolean exact, int k, int offset, long version) {
+
+		Key key = new Key(query, exact, k, offset);
+		synchronized (this.entries) {
+			Entry entry = this.entries.get(key);
+			if (entry != null && entry.version == version) {
+				this.hits.increment();
+				return entry.results;
+			}
+			if (entry != null) {
+				this.entries.remove(key);
+			}
+		}
+		this.misses.increment();
+		return null;
+	}
+
+	/**
+	 * Caches the results of a search.
+	 *
+	 * @param query   the stemmed query
+	 * @param exact   whether the search is exact
+	 * @param k       the maximum number of results requested
+	 * @param offset  the number of best results skipped
+	 * @param version the version of the index read before the search started
+	 * @param results the unmodifiable results of the search
+	 */
+	public void put(String query, boolean exact, int k, int offset, long version, List<CompareSearch> results) {
+
+		synchronized (this.entries) {
+			this.entries.put(new Key(query, exact, k, offset), new Entry(version, results));
+		}
+	}
+
+	/**
+	 * Returns the number of searches found in the cache.
+	 *
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Returns the number of searches not found in the cache or out of date.
+	 *
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Returns the number of searches cached.
+	 *
+	 * @return number of cached searches
+	 */
+	public int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	/**
+	 * Returns the maximum number of searches cached.
+	 *
+	 * @return the capacity of this cache
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Identifies a search by its stemmed query, whether it is exact, and the page
+	 * of results requested.
+	 */
+	private static class Key {
+
+		/**
+		 * The stemmed query.
+		 */
+		private final String query;
+
+		/**
+		 * Whether the search is exact.
+		 */
+		private final boolean exact;
+
+		/**
+		 * The maximum number of results requested.
+		 */
+		private final int k;
+
+		/**
+		 * The number of best results skipped.
+		 */
+		private final int offset;
+
+		/**
+		 * Initializes a key.
+		 *
+		 * @param query  the stemmed query
+		 * @param exact  whether the search is exact
+		 * @param k      the maximum number of results requested
+		 * @param offset the number of best results skipped
+		 */
+		public Key(String query, boolean exact, int k, int offset) {
+			this.query = query;
+			this.exact = exact;
+			this.k = k;
+			this.offset = offset;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return this.exact == other.exact && this.k == other.k && this.offset == other.offset
+					&& this.query.equals(other.query);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.query, this.exact, this.k, this.offset);
+		}
+	}
+
+	/**
+	 * The results of a search and the version of the index they came from.
+	 */
+	private static class Entry {
+
+		/**
+		 * The version of the index the results were computed from.
+		 */
+		private final long version;
+
+		/**
+		 * The unmodifiable results of the search.
+		 */
+		private final List<CompareSearch> results;
+
+		/**
+		 * Initializes an entry.
+		 *
+		 * @param version the version of the index the results were computed from
+		 * @param results the unmodifiable results of the search
+		 */
+		public Entry(long version, List<CompareSearch> results) {
+			this.version = version;
+			this.results = results;
+		}
+	}
+}
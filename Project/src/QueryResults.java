@@ -0,0 +1,137 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the results of each query searched, separately from the inverted index
+ * so searching never changes the index. The amount stored can be bounded by
+ * the number of results kept, where each query counts as one result plus the
+ * number of results it has. When the bound is passed, the queries stored first
+ * are removed first.
+ *
+ * This class is thread-safe. The bound is approximate while queries are being
+ * stored concurrently.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class QueryResults {
+
+	/**
+	 * Stores mappings of the queries and their CompareSearch results.
+	 */
+	private final Map<String, List<CompareSearch>> results;
+
+	/**
+	 * The queries stored, in the order they were first stored.
+	 */
+	private final Queue<String> order;
+
+	/**
+	 * The number of results stored, counting one for each query.
+	 */
+	private final AtomicLong size;
+
+	/**
+	 * The maximum number of results stored, counting one for each query.
+	 */
+	private final long limit;
+
+	/**
+	 * Initializes an unbounded set of query results.
+	 */
+	public QueryResults() {
+		this(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes a bounded set of query results.
+	 *
+	 * @param limit the maximum number of results stored, counting one for each
+	 *              query
+	 */
+	public QueryResults(long limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("The results limit must be positive.");
+		}
+		this.results = new ConcurrentHashMap<>();
+		this.order = new ConcurrentLinkedQueue<>();
+		this.size = new AtomicLong();
+		this.limit = limit;
+	}
+
+	/**
+	 * Stores the sorted results of a query, removing the oldest queries if too
+	 * many results are stored.
+	 *
+	 * @param query   the stemmed query
+	 * @param results the sorted results of the query
+	 */
+	public void put(String query, List<CompareSearch> results) {
+
+		List<CompareSearch> stored = Collections.unmodifiableList(results);
+		List<CompareSearch> previous = this.results.put(query, stored);
+		if (previous == null) {
+			this.order.add(query);
+			this.size.addAndGet(stored.size() + 1);
+		} else {
+			this.size.addAndGet(stored.size() - previous.size());
+		}
+
+		while (this.size.get() > this.limit) {
+			String oldest = this.order.poll();
+			if (oldest == null) {
+				break;
+			}
+			List<CompareSearch> removed = this.results.remove(oldest);
+			if (removed != null) {
+				this.size.addAndGet(-(removed.size() + 1));
+			}
+		}
+	}
+
+	/**
+	 * Returns the results of a query.
+	 *
+	 * @param query the stemmed query
+	 * @return the sorted results of the query, or {@code null} if not stored
+	 */
+	public List<CompareSearch> get(String query) {
+		return this.results.get(query);
+	}
+
+	/**
+	 * Checks whether the results of a query are stored.
+	 *
+	 * @param query the stemmed query
+	 * @return true if the results of the query are stored
+	 */
+	public boolean containsKey(String query) {
+		return this.results.containsKey(query);
+	}
+
+	/**
+	 * Returns the number of queries stored.
+	 *
+	 * @return number of queries with stored results
+	 */
+	public int size() {
+		return this.results.size();
+	}
+
+	/**
+	 * Returns the stored queries and their results, sorted by query.
+	 *
+	 * @return mapping of queries and their results
+	 */
+	public Map<String, List<CompareSearch>> getResults() {
+		return new TreeMap<>(this.results);
+	}
+}
@@ -3,6 +3,8 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -20,6 +22,11 @@ public class ResultsBuilder {
 	 * The InvertedIndex to be searched through
 	 */
 	InvertedIndex ind;
+
+	/**
+	 * The results of each query searched.
+	 */
+	final QueryResults results;
 	
 	/** 
 	 * The Results contructor
@@ -27,7 +34,18 @@ public class ResultsBuilder {
 	 * @param ind the InvertedIndex to be searched through
 	 */
 	public ResultsBuilder(InvertedIndex ind) {
+		this(ind, new QueryResults());
+	}
+
+	/**
+	 * The Results contructor
+	 *
+	 * @param ind     the InvertedIndex to be searched through
+	 * @param results where the results of each query are stored
+	 */
+	public ResultsBuilder(InvertedIndex ind, QueryResults results) {
 		this.ind = ind;
+		this.results = results;
 	}
 	
 	/**
@@ -48,10 +66,19 @@ public class ResultsBuilder {
 			while ((curr = reader.readLine()) != null) {
 				Set<String> stemmedLine = TextFileStemmer.uniqueStems(curr);
 				curr = String.join(" ", stemmedLine);
-				if (!curr.isBlank() || !curr.isEmpty()) {
-					ind.search(curr, exact);
+				if ((!curr.isBlank() || !curr.isEmpty()) && !results.containsKey(curr)) {
+					results.put(curr, ind.search(curr, exact));
 				}
 			}
 		}
 	}
+
+	/**
+	 * Returns the results of each query searched, sorted by query.
+	 *
+	 * @return mapping of queries and their results
+	 */
+	public Map<String, List<CompareSearch>> getResults() {
+		return results.getResults();
+	}
 }
@@ -6,7 +6,11 @@ import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -41,6 +45,16 @@ public class ResultsServlet extends HttpServlet {
 	 * The title to use for this webpage. 
 	 */
 	private static final String TITLE = "Search Results";
+
+	/** 
+	 * The number of results shown on each page.
+	 */
+	private static final int PAGE_SIZE = 10;
+
+	/**
+	 * How long a search may take before it is stopped.
+	 */
+	private static final Duration SEARCH_TIMEOUT = Duration.ofSeconds(10);
 	
 	/** 
 	 * Search results builder.
@@ -50,7 +64,7 @@ public class ResultsServlet extends HttpServlet {
 	/** 
 	 * Thread safe inverted index.
 	 */
-	private final ThreadSafeInvertedIndex index;
+	private final InvertedIndex index;
 	
 	/** 
 	 * Constructor for servlet.
@@ -58,7 +72,7 @@ public class ResultsServlet extends HttpServlet {
 	 * @param results Search results builder.
 	 * @param index thread safe inverted index.
 	 */
-	public ResultsServlet(ThreadSafeResultsBuilder results, ThreadSafeInvertedIndex index) {
+	public ResultsServlet(ThreadSafeResultsBuilder results, InvertedIndex index) {
 		super();
 		this.index = index;
 		this.results = results;
@@ -179,6 +193,14 @@ public class ResultsServlet extends HttpServlet {
 		out.printf("					<i class=\"fas fa-calendar-alt\"></i>%n");
 		out.printf("					&nbsp;Updated %s%n", getDate());
 		out.printf("	      </h5>%n");
+		out.printf("	      <p>Cached searches: %d of %d, %d hits, %d misses</p>%n", results.getCache().size(),
+				results.getCache().getCapacity(), results.getCache().getHits(), results.getCache().getMisses());
+		out.printf("	      <p>Stem cache hit rate: %.1f%%</p>%n", TextFileStemmer.getCache().getHitRate() * 100);
+		WorkQueue queue = results.getQueue();
+		out.printf("	      <p>Work queue: %d submitted, %d completed, %d failed, %d queued</p>%n", queue.getSubmitted(),
+				queue.getCompleted(), queue.getFailed(), queue.getQueued());
+		out.printf("	      <p>Waiting: %s</p>%n", queue.getWaitTimes());
+		out.printf("	      <p>Running: %s</p>%n", queue.getRunTimes());
 		out.printf("	  </div>%n");
 		out.printf("	</footer>%n");
 		out.printf("</body>%n");
@@ -210,9 +232,32 @@ public class ResultsServlet extends HttpServlet {
 		log.info("type = " + type);
 		log.info("exact = " + exact);
 
+		int page = 1;
+		try {
+			page = Math.max(Integer.parseInt(request.getParameter("page")), 1);
+		} catch (NumberFormatException e) {
+			page = 1;
+		}
+
 		Instant now = Instant.now();
 
-		results.parseSearch(search, exact);
+		// Ask for one extra result to know whether there is a next page
+		CompletableFuture<List<CompareSearch>> pending = results.submitSearch(search, exact, PAGE_SIZE + 1,
+				(page - 1) * PAGE_SIZE, SEARCH_TIMEOUT);
+		List<CompareSearch> found;
+		boolean stopped = false;
+		try {
+			found = pending.get();
+		} catch (InterruptedException e) {
+			// The request was abandoned, so stop the search as well
+			pending.cancel(true);
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException | CancellationException e) {
+			log.info("Search stopped: " + e);
+			found = List.of();
+			stopped = true;
+		}
 
 		Duration elapsed = Duration.between(now, Instant.now());
 		double secs = (double) elapsed.toNanos() / Duration.ofSeconds(1).toNanos();
@@ -220,6 +265,7 @@ public class ResultsServlet extends HttpServlet {
 		PrintWriter out = response.getWriter();
 		DecimalFormat d = new DecimalFormat("#.###");
 
+		String query = search;
 		TreeSet<String> seq = TextFileStemmer.uniqueStems(search);
 		search = String.join(" ", seq);
 
@@ -253,12 +299,16 @@ public class ResultsServlet extends HttpServlet {
 		out.printf("<h2 class=\"title\">Showing results for: %s</h2>%n", search);
 		out.printf("%n");
 
-		if (results.getSearches(search).isEmpty()) {
+		if (stopped) {
+			out.printf("<p> The search for %s took too long. Try a more specific search.</p>%n", search);
+		} else if (found.isEmpty()) {
 			out.printf("<p> No results for %s</p>%n", search);
 		} else {
-			out.printf("<p> Here are %d results for %s in %f seconds </p>%n", results.getSearches(search).size(),
+			int first = (page - 1) * PAGE_SIZE + 1;
+			int shown = Math.min(found.size(), PAGE_SIZE);
+			out.printf("<p> Here are results %d to %d for %s in %f seconds </p>%n", first, first + shown - 1,
 					search, secs);
-			for (CompareSearch comp : results.getSearches(search)) {
+			for (CompareSearch comp : found.subList(0, shown)) {
 				out.printf("<div class=\"box has-text-center\">%n");
 				out.printf("<a href=\"%s\">%s</a>: %s%n", comp.getLocation(), comp.getLocation(), comp.getCount());
 				out.printf("<p class=\"has-text-red is-text-5 has-text-left\">Score = %s</p>%n",
@@ -266,6 +316,33 @@ public class ResultsServlet extends HttpServlet {
 				out.printf("</div>%n");
 			}
 		}
+
+		if (page > 1) {
+			printPageForm(out, request, query, type, page - 1, "Previous");
+		}
+		if (found.size() > PAGE_SIZE) {
+			printPageForm(out, request, query, type, page + 1, "Next");
+		}
+	}
+
+	/**
+	 * Prints a form that repeats the search for another page of results.
+	 *
+	 * @param out     the writer to use
+	 * @param request the request being answered
+	 * @param query   the escaped query that was searched for
+	 * @param type    the escaped search type that was used
+	 * @param page    the page of results to request
+	 * @param label   the text of the button
+	 */
+	private static void printPageForm(PrintWriter out, HttpServletRequest request, String query, String type, int page,
+			String label) {
+		out.printf("<form method=\"%s\" action=\"%s\">%n", "POST", request.getServletPath());
+		out.printf("<input type=\"hidden\" name=\"search\" value=\"%s\">%n", query);
+		out.printf("<input type=\"hidden\" name=\"type\" value=\"%s\">%n", type);
+		out.printf("<input type=\"hidden\" name=\"page\" value=\"%d\">%n", page);
+		out.printf("<button class=\"button\" type=\"submit\">%s</button>%n", label);
+		out.printf("</form>%n");
 	}
 
 	/**
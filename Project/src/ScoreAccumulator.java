@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * Accumulates the number of times query words are found in each location while
+ * a search is scored one word at a time. Counts are kept in an array indexed by
+ * location id, along with the list of location ids that have been counted, so
+ * adding to a location never scans the results found so far.
+ *
+ * Warning: This class is not thread-safe. Each search should use its own
+ * accumulator.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class ScoreAccumulator {
+
+	/**
+	 * The number of matches found so far, indexed by location id.
+	 */
+	private int[] counts;
+
+	/**
+	 * The location ids with at least one match, in the order first matched.
+	 */
+	private int[] documents;
+
+	/**
+	 * Number of location ids with at least one match.
+	 */
+	private int size;
+
+	/**
+	 * Initializes an empty accumulator.
+	 *
+	 * @param capacity the expected number of location ids
+	 */
+	public ScoreAccumulator(int capacity) {
+		this.counts = new int[Math.max(capacity, 1)];
+		this.documents = new int[16];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds to the number of matches found in a location.
+	 *
+	 * @param document the location id
+	 * @param count    the number of matches to add
+	 */
+	public void add(int document, int count) {
+
+		if (document >= this.counts.length) {
+			this.counts = Arrays.copyOf(this.counts, Math.max(document + 1, this.counts.length * 2));
+		}
+
+		if (this.counts[document] == 0) {
+			if (this.size == this.documents.length) {
+				this.documents = Arrays.copyOf(this.documents, this.size * 2);
+			}
+			this.documents[this.size++] = document;
+		}
+		this.counts[document] += count;
+	}
+
+	/**
+	 * Returns the number of locations with at least one match.
+	 *
+	 * @return number of locations matched
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the location id at an index.
+	 *
+	 * @param index the index, between 0 and {@link #size()}
+	 * @return the location id
+	 */
+	public int getDocument(int index) {
+		return this.documents[index];
+	}
+
+	/**
+	 * Returns the number of matches found in a location.
+	 *
+	 * @param document the location id
+	 * @return the number of matches found
+	 */
+	public int getCount(int document) {
+		return document < this.counts.length ? this.counts[document] : 0;
+	}
+}
@@ -0,0 +1,91 @@
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical work requested at the same time. The first caller for a
+ * key does the work, and every caller asking for the same key while it is in
+ * progress waits for and shares that result instead of repeating it. Once the
+ * work finishes, the next caller for the key does the work again. If the work
+ * is cancelled, the callers waiting for it try again instead of sharing the
+ * cancellation. Callers running as submitted work on a {@link WorkQueue} stop
+ * waiting once their own work is cancelled or past its deadline.
+ *
+ * This class is thread-safe.
+ *
+ * @param <K> the type of key identifying the work
+ * @param <V> the type of result
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class SingleFlight<K, V> {
+
+	/**
+	 * The work currently in progress for each key.
+	 */
+	private final Map<K, CompletableFuture<V>> inFlight;
+
+	/**
+	 * Initializes with no work in progress.
+	 */
+	public SingleFlight() {
+		this.inFlight = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Does the work for a key, or waits for the same work already in progress.
+	 *
+	 * @param key  identifies the work
+	 * @param work computes the result
+	 * @return the result of the work for the key
+	 */
+	public V run(K key, Supplier<V> work) {
+
+		CompletableFuture<V> mine = new CompletableFuture<>();
+		CompletableFuture<V> existing;
+		while ((existing = this.inFlight.putIfAbsent(key, mine)) != null) {
+			try {
+				return WorkQueue.await(existing);
+			} catch (CancellationException e) {
+				if (WorkQueue.isCancelled()) {
+					throw e;
+				}
+				/* Cancelled on behalf of another caller, so try again. */
+				continue;
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		V result;
+		try {
+			result = work.get();
+		} catch (RuntimeException | Error e) {
+			/* Removed first, so callers trying again do not find it. */
+			this.inFlight.remove(key, mine);
+			mine.completeExceptionally(e);
+			throw e;
+		}
+		this.inFlight.remove(key, mine);
+		mine.complete(result);
+		return result;
+	}
+
+	/**
+	 * Returns the number of keys with work in progress.
+	 *
+	 * @return number of keys being worked on
+	 */
+	public int size() {
+		return this.inFlight.size();
+	}
+}
@@ -0,0 +1,187 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Remembers the stem of each word recently stemmed, since the same words are
+ * repeated constantly in text. Words are kept in two generations: new stems go
+ * into the current generation, and once it reaches half of the memory cap, it
+ * becomes the previous generation and the old previous generation is dropped. A
+ * word found in the previous generation is copied into the current one, so
+ * frequently used words survive while rarely used words are eventually
+ * dropped. Memory use stays near the cap without tracking the order of every
+ * lookup.
+ *
+ * This class is thread-safe.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class StemCache {
+
+	/**
+	 * The default memory cap in bytes.
+	 */
+	public static final long DEFAULT_CAPACITY = 16 * 1024 * 1024;
+
+	/**
+	 * Estimated bytes used by each entry besides its characters, including the
+	 * map entry and the string objects.
+	 */
+	private static final int ENTRY_OVERHEAD = 112;
+
+	/**
+	 * The words stemmed most recently and their stems.
+	 */
+	private volatile Map<String, String> current;
+
+	/**
+	 * The words stemmed before the current generation started and their stems.
+	 */
+	private volatile Map<String, String> previous;
+
+	/**
+	 * Estimated bytes used by the current generation.
+	 */
+	private final AtomicLong weight;
+
+	/**
+	 * The memory cap in bytes.
+	 */
+	private final long capacity;
+
+	/**
+	 * The number of words found in the cache.
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * The number of words that had to be stemmed.
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Initializes a cache with the default memory cap.
+	 */
+	public StemCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param capacity the memory cap in bytes
+	 */
+	public StemCache(long capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The cache capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.current = new ConcurrentHashMap<>();
+		this.previous = new ConcurrentHashMap<>();
+		this.weight = new AtomicLong();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Returns the stem of a word, stemming it only if it is not cached.
+	 *
+	 * @param word    the cleaned word
+	 * @param stemmer stems the word if it is not cached
+	 * @return the stem of the word
+	 */
+	public String get(String word, Function<String, String> stemmer) {
+
+		String stem = this.current.get(word);
+		if (stem != null) {
+			this.hits.increment();
+			return stem;
+		}
+
+		stem = this.previous.get(word);
+		if (stem != null) {
+			this.hits.increment();
+		} else {
+			this.misses.increment();
+			stem = stemmer.apply(word);
+			/* Most stems are the word itself, so keep a single string. */
+			if (stem.equals(word)) {
+				stem = word;
+			}
+		}
+
+		if (this.current.putIfAbsent(word, stem) == null) {
+			long added = ENTRY_OVERHEAD + 2L * word.length() + (stem == word ? 0 : 2L * stem.length());
+			if (this.weight.addAndGet(added) > this.capacity / 2) {
+				rotate();
+			}
+		}
+		return stem;
+	}
+
+	/**
+	 * Starts a new generation if the current one is still full.
+	 */
+	private synchronized void rotate() {
+
+		if (this.weight.get() > this.capacity / 2) {
+			this.previous = this.current;
+			this.current = new ConcurrentHashMap<>();
+			this.weight.set(0);
+		}
+	}
+
+	/**
+	 * Returns the number of words found in the cache.
+	 *
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Returns the number of words that had to be stemmed.
+	 *
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Returns the fraction of words found in the cache.
+	 *
+	 * @return the hit rate between 0 and 1, or 0 if nothing was looked up
+	 */
+	public double getHitRate() {
+
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total == 0 ? 0 : hits / (double) total;
+	}
+
+	/**
+	 * Returns the number of words cached.
+	 *
+	 * @return number of words in both generations, counting repeated words once
+	 *         per generation
+	 */
+	public int size() {
+		return this.current.size() + this.previous.size();
+	}
+
+	/**
+	 * Returns the memory cap.
+	 *
+	 * @return the memory cap in bytes
+	 */
+	public long getCapacity() {
+		return this.capacity;
+	}
+}
@@ -0,0 +1,372 @@
+import java.util.Arrays;
+
+/**
+ * Stores the locations a single word is found in, as location ids from a
+ * {@link DocumentTable} kept in increasing order, along with the posting list
+ * of positions for each location.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class TermPostings {
+
+	/**
+	 * The location ids in increasing order.
+	 */
+	private int[] documents;
+
+	/**
+	 * The positions for the location id at the same index.
+	 */
+	private PostingList[] postings;
+
+	/**
+	 * Number of locations stored.
+	 */
+	private int size;
+
+	/**
+	 * The number of positions for the location id at the same index when this is
+	 * a snapshot, or {@code null} if the posting lists are read directly.
+	 */
+	private int[] counts;
+
+	/**
+	 * Number of times locations or positions have been added.
+	 */
+	private long modifications;
+
+	/**
+	 * The highest score of this word in any location, as of
+	 * {@link #maxScoreModification}.
+	 */
+	private volatile double maxScore;
+
+	/**
+	 * The number of modifications when {@link #maxScore} was computed, or -1 if
+	 * it has not been computed.
+	 */
+	private volatile long maxScoreModification;
+
+	/**
+	 * Initializes an empty set of postings.
+	 */
+	public TermPostings() {
+		this.documents = new int[1];
+		this.postings = new PostingList[1];
+		this.size = 0;
+		this.modifications = 0;
+		this.maxScoreModification = -1;
+	}
+
+	/**
+	 * Returns the posting list for a location id, creating an empty one if the
+	 * location has not been added yet.
+	 *
+	 * @param document the location id
+	 * @return the posting list for that location
+	 */
+	public PostingList add(int document) {
+
+		checkModifiable();
+		this.modifications++;
+
+		/* Usually adding to the most recent location. */
+		if (this.size > 0 && this.documents[this.size - 1] == document) {
+			return this.postings[this.size - 1];
+		}
+
+		int index = find(document);
+		if (index >= 0) {
+			return this.postings[index];
+		}
+
+		PostingList list = new PostingList();
+		insert(-(index + 1), document, list);
+		return list;
+	}
+
+	/**
+	 * Adds all of the postings from another set of postings, converting the other
+	 * location ids along the way. Both sets are kept sorted by location id, so
+	 * they are merged in a single pass.
+	 *
+	 * @param o     other postings to be added from
+	 * @param remap the location id in this table for each location id of the other
+	 */
+	public void addAll(TermPostings o, int[] remap) {
+		addAll(o, remap, 0);
+	}
+
+	/**
+	 * Adds all of the postings from another set of postings, converting the other
+	 * location ids and shifting the other positions by an offset. Posting lists
+	 * are only shared with the other postings when the offset is 0.
+	 *
+	 * @param o      other postings to be added from
+	 * @param remap  the location id in this table for each location id of the other
+	 * @param offset the amount added to each of the other positions
+	 */
+	public void addAll(TermPostings o, int[] remap, int offset) {
+
+		checkModifiable();
+		this.modifications++;
+
+		int[] theirDocuments = new int[o.size];
+		PostingList[] theirPostings = new PostingList[o.size];
+		boolean sorted = true;
+		for (int i = 0; i < o.size; i++) {
+			theirDocuments[i] = remap[o.documents[i]];
+			theirPostings[i] = o.postings[i];
+			if (offset != 0) {
+				theirPostings[i] = new PostingList();
+				theirPostings[i].addAll(o.postings[i], offset);
+			}
+			sorted &= i == 0 || theirDocuments[i - 1] < theirDocuments[i];
+		}
+
+		if (!sorted) {
+			sortByDocument(theirDocuments, theirPostings);
+		}
+
+		/* Only new locations at the end, nothing to merge. */
+		if (this.size == 0 || theirDocuments.length == 0
+				|| theirDocuments[0] > this.documents[this.size - 1]) {
+			ensureCapacity(this.size + theirDocuments.length);
+			System.arraycopy(theirDocuments, 0, this.documents, this.size, theirDocuments.length);
+			System.arraycopy(theirPostings, 0, this.postings, this.size, theirPostings.length);
+			this.size += theirDocuments.length;
+			return;
+		}
+
+		int[] mergedDocuments = new int[this.size + theirDocuments.length];
+		PostingList[] mergedPostings = new PostingList[mergedDocuments.length];
+		int i = 0, j = 0, k = 0;
+		while (i < this.size || j < theirDocuments.length) {
+			if (j == theirDocuments.length || i < this.size && this.documents[i] < theirDocuments[j]) {
+				mergedDocuments[k] = this.documents[i];
+				mergedPostings[k++] = this.postings[i++];
+			} else if (i == this.size || this.documents[i] > theirDocuments[j]) {
+				mergedDocuments[k] = theirDocuments[j];
+				mergedPostings[k++] = theirPostings[j++];
+			} else {
+				this.postings[i].addAll(theirPostings[j++]);
+				mergedDocuments[k] = this.documents[i];
+				mergedPostings[k++] = this.postings[i++];
+			}
+		}
+
+		this.documents = mergedDocuments;
+		this.postings = mergedPostings;
+		this.size = k;
+	}
+
+	/**
+	 * Returns the posting list for a location id.
+	 *
+	 * @param document the location id
+	 * @return the posting list for that location, or {@code null} if not found
+	 */
+	public PostingList get(int document) {
+
+		int index = find(document);
+		return index >= 0 ? this.postings[index] : null;
+	}
+
+	/**
+	 * Searches for the index of a location id.
+	 *
+	 * @param document the location id
+	 * @return the index of the location id if found, otherwise
+	 *         {@code (-(insertion point) - 1)}
+	 *
+	 * @see Arrays#binarySearch(int[], int, int, int)
+	 */
+	public int find(int document) {
+		return Arrays.binarySearch(this.documents, 0, this.size, document);
+	}
+
+	/**
+	 * Finds the first index at or after a starting index with a location id that
+	 * is not smaller than the one provided. Searches with exponentially larger
+	 * steps first, so seeking a short distance ahead is cheap.
+	 *
+	 * @param document the location id to seek to
+	 * @param from     the index to start from
+	 * @return the index of the first location id at least as large, or
+	 *         {@link #size()} if there is none
+	 */
+	public int seek(int document, int from) {
+
+		if (from >= this.size) {
+			return this.size;
+		}
+
+		int bound = 1;
+		while (from + bound < this.size && this.documents[from + bound] < document) {
+			bound *= 2;
+		}
+
+		int index = Arrays.binarySearch(this.documents, from + bound / 2, Math.min(from + bound + 1, this.size),
+				document);
+		return index >= 0 ? index : -(index + 1);
+	}
+
+	/**
+	 * Returns the highest score this word has in any location, where the score is
+	 * the number of times it is found divided by the total number of words in the
+	 * location. The value is computed once and reused until positions are added.
+	 * Word counts only grow, so a reused value is never lower than the true one.
+	 *
+	 * @param table the word counts of each location
+	 * @return an upper bound of this word's score in any location
+	 */
+	public double getMaxScore(DocumentTable table) {
+
+		long modification = this.modifications;
+		if (this.maxScoreModification == modification) {
+			return this.maxScore;
+		}
+
+		double max = 0;
+		for (int i = 0; i < this.size; i++) {
+			max = Math.max(max, getCount(i) / (double) table.getCount(this.documents[i]));
+		}
+
+		this.maxScore = max;
+		this.maxScoreModification = modification;
+		return max;
+	}
+
+	/**
+	 * Returns the number of locations stored.
+	 *
+	 * @return number of locations this word is found in
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the location id at an index.
+	 *
+	 * @param index the index, between 0 and {@link #size()}
+	 * @return the location id
+	 */
+	public int getDocument(int index) {
+		return this.documents[index];
+	}
+
+	/**
+	 * Returns the number of positions at an index.
+	 *
+	 * @param index the index, between 0 and {@link #size()}
+	 * @return the number of times the word is found in the location at that index
+	 */
+	public int getCount(int index) {
+		return this.counts != null ? this.counts[index] : this.postings[index].size();
+	}
+
+	/**
+	 * Returns a read-only copy of the location ids and the number of positions in
+	 * each location, which can be scored after the lock protecting these postings
+	 * is released. The posting lists themselves are shared, so their positions
+	 * must still be read while holding that lock.
+	 *
+	 * @return a snapshot of these postings
+	 */
+	public TermPostings snapshot() {
+
+		TermPostings copy = new TermPostings();
+		copy.documents = Arrays.copyOf(this.documents, this.size);
+		copy.postings = Arrays.copyOf(this.postings, this.size);
+		copy.counts = new int[this.size];
+		for (int i = 0; i < this.size; i++) {
+			copy.counts[i] = this.postings[i].size();
+		}
+		copy.size = this.size;
+		copy.modifications = this.modifications;
+		copy.maxScore = this.maxScore;
+		copy.maxScoreModification = this.maxScoreModification;
+		return copy;
+	}
+
+	/**
+	 * Returns the posting list at an index.
+	 *
+	 * @param index the index, between 0 and {@link #size()}
+	 * @return the positions for the location id at that index
+	 */
+	public PostingList getPostings(int index) {
+		return this.postings[index];
+	}
+
+	/**
+	 * Makes sure these postings are not a snapshot before they are modified.
+	 *
+	 * @throws UnsupportedOperationException if these postings are a snapshot
+	 */
+	private void checkModifiable() {
+
+		if (this.counts != null) {
+			throw new UnsupportedOperationException("Postings snapshots are read-only.");
+		}
+	}
+
+	/**
+	 * Inserts a new location id and its posting list at an index.
+	 *
+	 * @param index    where to insert the location id
+	 * @param document the location id
+	 * @param list     the posting list for that location
+	 */
+	private void insert(int index, int document, PostingList list) {
+
+		ensureCapacity(this.size + 1);
+		System.arraycopy(this.documents, index, this.documents, index + 1, this.size - index);
+		System.arraycopy(this.postings, index, this.postings, index + 1, this.size - index);
+		this.documents[index] = document;
+		this.postings[index] = list;
+		this.size++;
+	}
+
+	/**
+	 * Grows the arrays if necessary.
+	 *
+	 * @param capacity the minimum number of locations needed
+	 */
+	private void ensureCapacity(int capacity) {
+
+		if (capacity > this.documents.length) {
+			int grown = Math.max(capacity, this.documents.length * 2);
+			this.documents = Arrays.copyOf(this.documents, grown);
+			this.postings = Arrays.copyOf(this.postings, grown);
+		}
+	}
+
+	/**
+	 * Sorts location ids along with their posting lists.
+	 *
+	 * @param documents the location ids to sort
+	 * @param postings  the posting lists to keep in the same order
+	 */
+	private static void sortByDocument(int[] documents, PostingList[] postings) {
+
+		long[] pairs = new long[documents.length];
+		for (int i = 0; i < documents.length; i++) {
+			pairs[i] = ((long) documents[i] << 32) | i;
+		}
+		Arrays.sort(pairs);
+
+		PostingList[] copy = postings.clone();
+		for (int i = 0; i < pairs.length; i++) {
+			documents[i] = (int) (pairs[i] >>> 32);
+			postings[i] = copy[(int) pairs[i]];
+		}
+	}
+}
@@ -3,7 +3,9 @@ import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -62,4 +64,20 @@ public class TextFileFinder {
 	public static List<Path> list(Path start) throws IOException {
 		return find(start).collect(Collectors.toList());
 	}
+
+	/**
+	 * Returns the text files found and their sizes, in the order they are found.
+	 *
+	 * @param start the initial path to search
+	 * @return mapping of text files and their sizes in bytes
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static Map<Path, Long> listSizes(Path start) throws IOException {
+
+		Map<Path, Long> sizes = new LinkedHashMap<>();
+		for (Path path : list(start)) {
+			sizes.put(path, Files.size(path));
+		}
+		return sizes;
+	}
 }
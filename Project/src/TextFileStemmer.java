@@ -16,6 +16,49 @@ public class TextFileStemmer {
 
 	/** The default stemmer algorithm used by this class. */
 	public static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
+
+	/**
+	 * A stemmer for each thread. Stemmers keep state while stemming, so they cannot
+	 * be shared between threads, but each thread can reuse its own.
+	 */
+	private static final ThreadLocal<Stemmer> STEMMERS = ThreadLocal.withInitial(() -> new SnowballStemmer(DEFAULT));
+
+	/**
+	 * The stems of recently stemmed words, shared by indexing, crawling, and
+	 * query parsing.
+	 */
+	private static final StemCache CACHE = new StemCache();
+
+	/**
+	 * Returns the stemmer of the current thread, using the default algorithm.
+	 *
+	 * @return a stemmer only used by the current thread
+	 */
+	public static Stemmer getStemmer() {
+		return STEMMERS.get();
+	}
+
+	/**
+	 * Returns the shared cache of recently stemmed words, to check how often it is
+	 * used.
+	 *
+	 * @return the shared stem cache
+	 */
+	public static StemCache getCache() {
+		return CACHE;
+	}
+
+	/**
+	 * Stems a single word that has already been cleaned, using the shared cache or
+	 * the stemmer of the current thread. Unlike {@link #uniqueStems(String)}, the
+	 * word is not parsed again and no set is created.
+	 *
+	 * @param word the cleaned word to stem
+	 * @return the stemmed word
+	 */
+	public static String stem(String word) {
+		return CACHE.get(word, w -> STEMMERS.get().stem(w).toString());
+	}
 	
 	/**
 	 * Returns a set of unique (no duplicates) cleaned and stemmed words parsed from
@@ -47,6 +90,10 @@ public class TextFileStemmer {
 	 * @return a sorted set of unique cleaned and stemmed words
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		return uniqueStems(line, new SnowballStemmer(DEFAULT));
+		TreeSet<String> stemmedWordsHash = new TreeSet<>();
+		for (String s : TextParser.parse(line)) {
+			stemmedWordsHash.add(stem(s));
+		}
+		return stemmedWordsHash;
 	}
 }
@@ -1,4 +1,7 @@
 import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 /**
@@ -16,6 +19,10 @@ public class TextParser {
 	/** Regular expression that matches non-alphabetic characters. **/
 	public static final Pattern CLEAN_REGEX = Pattern.compile("(?U)[^\\p{Alpha}\\p{Space}]+");
 
+	/** Whether lowercasing ASCII letters in the default locale stays in ASCII. **/
+	private static final boolean ASCII_LOWERCASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase()
+			.equals("abcdefghijklmnopqrstuvwxyz");
+
 	/**
 	 * Cleans the text by removing any non-alphabetic characters (e.g. non-letters
 	 * like digits, punctuation, symbols, and diacritical marks like the umlaut) and
@@ -41,13 +48,140 @@ public class TextParser {
 	}
 
 	/**
-	 * Cleans the text and then splits it by whitespace.
+	 * Cleans the text and then splits it by whitespace. Gives the same result as
+	 * {@code split(clean(text))}, but in a single pass through the text.
 	 *
 	 * @param text the text to clean and split
 	 * @return an array of {@link String} objects
 	 *
+	 * @see #parse(String, Consumer)
 	 */
 	public static String[] parse(String text) {
-		return split(clean(text));
+
+		List<String> words = new ArrayList<>();
+		parse(text, words::add);
+		return words.toArray(new String[words.size()]);
+	}
+
+	/**
+	 * Cleans the text and splits it by whitespace in a single pass, passing each
+	 * word to the consumer in order. Gives the same words as
+	 * {@code split(clean(text))} without building the normalized, cleaned, and
+	 * lowercased copies of the whole text. Only words containing non-ASCII
+	 * characters are normalized, and text containing a capital sigma is parsed
+	 * the original way.
+	 *
+	 * Like {@link #split(String)}, an empty word is passed first if the cleaned
+	 * text starts with whitespace that {@link String#strip()} does not remove,
+	 * such as a non-breaking space.
+	 *
+	 * @param text     the text to clean and split
+	 * @param consumer accepts each word
+	 */
+	public static void parse(String text, Consumer<String> consumer) {
+
+		/* Lowercasing a capital sigma depends on word boundaries in the whole text. */
+		if (text.indexOf('\u03A3') >= 0) {
+			for (String word : split(clean(text))) {
+				consumer.accept(word);
+			}
+			return;
+		}
+
+		StringBuilder buffer = new StringBuilder();
+		boolean found = false;
+		boolean leadingSpace = false;
+		int length = text.length();
+		int i = 0;
+
+		while (i < length) {
+			int c = text.codePointAt(i);
+			if (isSpace(c)) {
+				leadingSpace |= !found && !Character.isWhitespace(c);
+				i += Character.charCount(c);
+				continue;
+			}
+
+			int start = i;
+			boolean ascii = true;
+			while (i < length && !isSpace(c = text.codePointAt(i))) {
+				ascii &= c < 0x80;
+				i += Character.charCount(c);
+			}
+
+			String word = ascii ? cleanAscii(text, start, i, buffer) : cleanUnicode(text.substring(start, i), buffer);
+			if (!word.isEmpty()) {
+				if (!found && leadingSpace) {
+					consumer.accept("");
+				}
+				found = true;
+				consumer.accept(word);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a character is whitespace as matched by {@link #SPLIT_REGEX},
+	 * which is the Unicode White_Space property.
+	 *
+	 * @param c the code point to check
+	 * @return true if the character is whitespace
+	 */
+	private static boolean isSpace(int c) {
+
+		if (c < 0x80) {
+			return c == ' ' || c >= 0x9 && c <= 0xD;
+		}
+		int type = Character.getType(c);
+		return c == 0x85 || type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR
+				|| type == Character.PARAGRAPH_SEPARATOR;
+	}
+
+	/**
+	 * Cleans a word made only of ASCII characters, which never changes when
+	 * normalized.
+	 *
+	 * @param text   the text containing the word
+	 * @param start  the index of the first character of the word
+	 * @param end    the index after the last character of the word
+	 * @param buffer reused to build the cleaned word
+	 * @return the cleaned word, which may be empty
+	 */
+	private static String cleanAscii(String text, int start, int end, StringBuilder buffer) {
+
+		buffer.setLength(0);
+		boolean upper = false;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c >= 'a' && c <= 'z') {
+				buffer.append(c);
+			} else if (c >= 'A' && c <= 'Z') {
+				buffer.append(ASCII_LOWERCASE ? (char) (c + ('a' - 'A')) : c);
+				upper = true;
+			}
+		}
+		return upper && !ASCII_LOWERCASE ? buffer.toString().toLowerCase() : buffer.toString();
+	}
+
+	/**
+	 * Cleans a word containing non-ASCII characters by normalizing it, removing
+	 * non-alphabetic characters, and converting it to lowercase.
+	 *
+	 * @param word   the word to clean
+	 * @param buffer reused to build the cleaned word
+	 * @return the cleaned word, which may be empty
+	 */
+	private static String cleanUnicode(String word, StringBuilder buffer) {
+
+		String normalized = Normalizer.normalize(word, Normalizer.Form.NFD);
+		buffer.setLength(0);
+		for (int i = 0; i < normalized.length();) {
+			int c = normalized.codePointAt(i);
+			if (Character.isAlphabetic(c)) {
+				buffer.appendCodePoint(c);
+			}
+			i += Character.charCount(c);
+		}
+		return buffer.toString().toLowerCase();
 	}
 }
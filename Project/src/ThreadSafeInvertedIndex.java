@@ -39,10 +39,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 	
-	public void addAll(InvertedIndex o) {
+	@Override
+	public void addAll(InvertedIndex o, int offset) {
 		lock.writeLock().lock();
 		try {
-			super.addAll(o);
+			super.addAll(o, offset);
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -71,66 +72,66 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	}
 	
 	@Override
-	public Map<String, List<CompareSearch>> getCompareMap() {
+	public Set<String> getLocations(String word) {
 
 		lock.readLock().lock();
 		try {
-			return super.getCompareMap();
+			return super.getLocations(word);
 		} finally {
 			lock.readLock().unlock();
 		}
 	}
-
+	
 	@Override
-	public Set<String> getLocations(String word) {
+	public Set<Integer> getPositions(String word, String location) {
 
 		lock.readLock().lock();
 		try {
-			return super.getLocations(word);
+			return super.getPositions(word, location);
 		} finally {
 			lock.readLock().unlock();
 		}
 	}
-	
+
 	@Override
-	public Set<Integer> getPositions(String word, String location) {
+	public List<CompareSearch> search(String line, boolean exact, int k, int offset) {
 
 		lock.readLock().lock();
 		try {
-			return super.getPositions(word, location);
+			return super.search(line, exact, k, offset);
 		} finally {
 			lock.readLock().unlock();
 		}
 	}
 
 	@Override
-	public boolean checkLocations(List<CompareSearch> comps, String word, String location) {
+	public List<String> findWords(String line, boolean exact) {
 
 		lock.readLock().lock();
 		try {
-			return super.checkLocations(comps, word, location);
+			return super.findWords(line, exact);
 		} finally {
 			lock.readLock().unlock();
 		}
 	}
 
 	@Override
-	public void updateSearch(String word, CompareSearch comp, String location) {
+	public void addToScores(String word, ScoreAccumulator scores) {
 
 		lock.readLock().lock();
 		try {
-			super.updateSearch(word, comp, location);
+			super.addToScores(word, scores);
 		} finally {
 			lock.readLock().unlock();
 		}
 	}
 
 	@Override
-	public void addToComps(String word, List<CompareSearch> comps) {
+	public void addToComps(ScoreAccumulator scores, List<CompareSearch> comps) {
 
 		lock.readLock().lock();
 		try {
-			super.addToComps(word, comps);
+			super.addToComps(scores, comps);
 		} finally {
 			lock.readLock().unlock();
 		}
@@ -1,6 +1,10 @@
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A thread-safe inverted index builder.
@@ -13,9 +17,9 @@ import java.util.List;
 public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
 
 	/**
-	 * ThreadSafeIndex to be created.
+	 * Thread-safe index to be created, such as a {@link ConcurrentInvertedIndex}.
 	 */
-	private final ThreadSafeInvertedIndex ind;
+	private final InvertedIndex ind;
 
 	/**
 	 * Amount of threads to be used.
@@ -23,25 +27,86 @@ public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
 	final int threads;
 
 	/**
-	 * Queue that will allow tasks to work through.
+	 * Shared queue that will allow tasks to work through, shut down by its
+	 * owner.
 	 */
-	private WorkQueue queue;
+	private final WorkQueue queue;
 
 	/**
-	 * Sets the threads and thread-safe inverted index to the passed in values.
+	 * Files larger than this many bytes are memory-mapped and split into chunks
+	 * of about this size that are parsed in parallel, or 0 to read every file
+	 * line by line in a single task.
+	 */
+	private final long chunkSize;
+
+	/**
+	 * The number of positions each worker adds to its own index before merging
+	 * it with the others.
+	 */
+	private final int flushSize;
+
+	/**
+	 * The most bytes of small files parsed together in a single task.
+	 */
+	private static final long MAX_BATCH_BYTES = 1024 * 1024;
+
+	/**
+	 * The most small files parsed together in a single task.
+	 */
+	private static final int MAX_BATCH_FILES = 64;
+
+	/**
+	 * Sets the shared work queue and thread-safe inverted index to the passed in
+	 * values.
+	 * 
+	 * @param ind   the thread-safe inverted index to be created
+	 * @param queue the shared work queue to run tasks on
+	 */
+	public ThreadSafeInvertedIndexBuilder(InvertedIndex ind, WorkQueue queue) {
+		this(ind, queue, 0);
+	}
+
+	/**
+	 * Sets the shared work queue, thread-safe inverted index, and chunk size to
+	 * the passed in values.
+	 * 
+	 * @param ind       the thread-safe inverted index to be created
+	 * @param queue     the shared work queue to run tasks on
+	 * @param chunkSize files larger than this many bytes are split into chunks of
+	 *                  about this size parsed in parallel, or 0 to never split
+	 */
+	public ThreadSafeInvertedIndexBuilder(InvertedIndex ind, WorkQueue queue, long chunkSize) {
+		this(ind, queue, chunkSize, IndexBuffers.DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Sets the shared work queue, thread-safe inverted index, chunk size, and
+	 * flush size to the passed in values.
 	 * 
-	 * @param ind     the thread-safe inverted index to be created
-	 * @param threads amount of threads to be used.
+	 * @param ind       the thread-safe inverted index to be created
+	 * @param queue     the shared work queue to run tasks on
+	 * @param chunkSize files larger than this many bytes are split into chunks of
+	 *                  about this size parsed in parallel, or 0 to never split
+	 * @param flushSize the number of positions each worker adds to its own index
+	 *                  before merging it with the others
 	 */
-	public ThreadSafeInvertedIndexBuilder(ThreadSafeInvertedIndex ind, int threads) {
+	public ThreadSafeInvertedIndexBuilder(InvertedIndex ind, WorkQueue queue, long chunkSize, int flushSize) {
 		super(ind);
-		this.threads = threads;
+		this.threads = queue.size();
 		this.ind = ind;
-		this.queue = new WorkQueue(threads);
+		this.queue = queue;
+		this.chunkSize = chunkSize;
+		this.flushSize = flushSize;
 	}
 
 	/**
-	 * Sends stems, positions, and path to Inverted Index map.
+	 * Sends stems, positions, and path to Inverted Index map. Files are executed
+	 * largest first, so a large file found last does not keep a single thread
+	 * busy after the others are done. Small files are parsed together in batches
+	 * so each task does a useful amount of work. Each worker adds files to its
+	 * own index from {@link IndexBuffers}, which is merged with the others in an
+	 * {@link IndexMerger} whenever it grows large, and the shared index is only
+	 * written to once, after every file is parsed.
 	 *
 	 * @param argPath the path to be read from
 	 * 
@@ -49,53 +114,234 @@ public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
 	 */
 	public void getFile(Path argPath) throws IOException {
 
-		List<Path> paths = TextFileFinder.list(argPath);
-		for (Path path : paths) {
-			TaskAdd p = new TaskAdd(path);
-			queue.execute(p);
+		Map<Path, Long> sizes = TextFileFinder.listSizes(argPath);
+		List<Path> paths = new ArrayList<>(sizes.keySet());
+		paths.sort(Comparator.comparing(sizes::get, Comparator.reverseOrder()));
+
+		/* Batches stay small compared to each thread's share, to keep the end even. */
+		long total = 0;
+		for (long size : sizes.values()) {
+			total += size;
 		}
+		long batchBytes = Math.max(1, Math.min(MAX_BATCH_BYTES, total / (threads * 8L)));
+
+		WorkGroup group = new WorkGroup(queue);
+		IndexMerger merger = new IndexMerger(ind);
+		IndexBuffers buffers = new IndexBuffers(flushSize, merger::add);
+		List<Path> batch = new ArrayList<>();
+		long batched = 0;
 		try {
-			queue.finish();
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
+			for (Path path : paths) {
+				long size = sizes.get(path);
+				if (chunkSize > 0 && size > chunkSize) {
+					addChunks(path, merger, group);
+				} else if (size >= batchBytes) {
+					group.execute(new TaskAdd(List.of(path), buffers));
+				} else {
+					batch.add(path);
+					batched += size;
+					if (batched >= batchBytes || batch.size() >= MAX_BATCH_FILES) {
+						group.execute(new TaskAdd(batch, buffers));
+						batch = new ArrayList<>();
+						batched = 0;
+					}
+				}
+			}
+			if (!batch.isEmpty()) {
+				group.execute(new TaskAdd(batch, buffers));
+			}
+		} finally {
+			// work already added is waited for and published even if adding more failed
+			try {
+				group.finish();
+				buffers.flush();
+				merger.finish();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
 		}
-		queue.shutdown();
 	}
 		
 
+	/**
+	 * Splits a large file into chunks and executes a task for each chunk. A file
+	 * that cannot be split is skipped, the same as a file that cannot be read.
+	 *
+	 * @param path   the file to split
+	 * @param merger where the index of the whole file is merged
+	 * @param group  the tasks of this build
+	 */
+	private void addChunks(Path path, IndexMerger merger, WorkGroup group) {
+
+		List<long[]> chunks;
+		try {
+			chunks = MappedFileParser.split(path, chunkSize);
+		} catch (IOException e) {
+			System.out.println("IOException encountered.");
+			return;
+		}
+		ChunkedFile file = new ChunkedFile(path, chunks.size(), merger);
+		for (int i = 0; i < chunks.size(); i++) {
+			group.execute(new TaskChunk(file, i, chunks.get(i)[0], chunks.get(i)[1]));
+		}
+	}
+
+	/**
+	 * Collects the chunks of a single file as they are parsed. Once every chunk is
+	 * done, merges them into the index of the first chunk in order, shifting the
+	 * positions of each chunk by the number of positions before it. If a chunk
+	 * fails, the words read before the error are kept and the chunks after it are
+	 * dropped, the same as a file read in one task.
+	 */
+	private class ChunkedFile {
+
+		/** The file being parsed. */
+		private final Path path;
+
+		/** The index built from each chunk. */
+		private final InvertedIndex[] parts;
+
+		/** The number of positions in each chunk, or -1 if it failed. */
+		private final int[] counts;
+
+		/** The number of chunks not done yet. */
+		private final AtomicInteger remaining;
+
+		/** Where the index of the whole file is merged. */
+		private final IndexMerger merger;
+
+		/**
+		 * Initializes an empty set of chunks.
+		 *
+		 * @param path   the file being parsed
+		 * @param chunks the number of chunks
+		 * @param merger where the index of the whole file is merged
+		 */
+		public ChunkedFile(Path path, int chunks, IndexMerger merger) {
+			this.path = path;
+			this.parts = new InvertedIndex[chunks];
+			this.counts = new int[chunks];
+			this.remaining = new AtomicInteger(chunks);
+			this.merger = merger;
+		}
+
+		/**
+		 * Records a parsed chunk, merging the whole file if it was the last one.
+		 *
+		 * @param index the index of the chunk in the file
+		 * @param part  the index built from the chunk, up to the error if it failed
+		 * @param count the number of positions in the chunk, or -1 if it failed
+		 */
+		public void finish(int index, InvertedIndex part, int count) {
+
+			parts[index] = part;
+			counts[index] = count;
+			if (remaining.decrementAndGet() > 0) {
+				return;
+			}
+
+			int offset = 0;
+			for (int i = 0; i < parts.length; i++) {
+				if (i > 0) {
+					parts[0].addAll(parts[i], offset);
+				}
+				if (counts[i] < 0) {
+					/* Positions after an error are unknown, like a file read in one task. */
+					break;
+				}
+				offset += counts[i];
+			}
+			merger.add(parts[0]);
+		}
+	}
+
+	/**
+	 * Parses a single chunk of a large file into its own index.
+	 */
+	private class TaskChunk implements Runnable {
+
+		/** The file the chunk belongs to. */
+		private final ChunkedFile file;
+
+		/** The index of the chunk in the file. */
+		private final int index;
+
+		/** The offset of the first byte of the chunk. */
+		private final long start;
+
+		/** The offset after the last byte of the chunk. */
+		private final long end;
+
+		/**
+		 * Initializes this task.
+		 *
+		 * @param file  the file the chunk belongs to
+		 * @param index the index of the chunk in the file
+		 * @param start the offset of the first byte of the chunk
+		 * @param end   the offset after the last byte of the chunk
+		 */
+		public TaskChunk(ChunkedFile file, int index, long start, long end) {
+			this.file = file;
+			this.index = index;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			InvertedIndex part = new InvertedIndex();
+			int count = -1;
+			try {
+				count = MappedFileParser.parse(file.path, start, end, file.path.toString(), part);
+			} catch (IOException e) {
+				System.out.println("IOException encountered.");
+			} finally {
+				// always recorded, so the rest of the file is still merged if this chunk fails
+				file.finish(index, part, count);
+			}
+		}
+	}
+
 	/**
 	 * Waits until work is available in the work queue. When work is found, will
 	 * remove the work from the queue and run it. If a shutdown is detected, will
 	 * exit instead of grabbing new work from the queue. These threads will continue
-	 * running in the background until a shutdown is requested. Adds to the
-	 * thread-safe inverted index.
+	 * running in the background until a shutdown is requested. Adds to the index
+	 * of the worker running it, to be merged into the thread-safe inverted
+	 * index.
 	 */
 	private class TaskAdd implements Runnable {
 
-		/** The path to add or list. */
-		private Path path;
+		/** The paths to add. */
+		private final List<Path> paths;
+
+		/** The index of each worker. */
+		private final IndexBuffers buffers;
 
 		/**
 		 * Initializes this task.
 		 *
-		 * @param path the path to add or list
+		 * @param paths   the paths to add
+		 * @param buffers the index of each worker
 		 */
-		public TaskAdd(Path path) {
-			this.path = path;
+		public TaskAdd(List<Path> paths, IndexBuffers buffers) {
+			this.paths = paths;
+			this.buffers = buffers;
 		}
 
 		/**
-		 * Give the threads their work to do through the WorkQueue. Create the
-		 * ThreadSafeInvertedIndex map.
+		 * Give the threads their work to do through the WorkQueue. Add a batch of
+		 * files to the index of this worker. Like the single-threaded builder, a
+		 * file that fails keeps the words read before the error.
 		 */
 		@Override
 		public void run() {
-			try {
-				InvertedIndex idx = new InvertedIndex();
-				queryFileParse(path, idx);
-				ind.addAll(idx);
-			} catch (IOException e) {
-				System.out.println("IOException encountered.");
+			for (Path path : paths) {
+				try {
+					buffers.added(queryFileParse(path, buffers.get()));
+				} catch (IOException e) {
+					System.out.println("IOException encountered.");
+				}
 			}
 		}
 	}
@@ -3,11 +3,12 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A thread-safe search results builder.
@@ -20,9 +21,9 @@ import java.util.TreeSet;
 public class ThreadSafeResultsBuilder extends ResultsBuilder {
 
 	/**
-	 * ThreadSafeIndex to be created.
+	 * Thread-safe index to be created, such as a {@link ConcurrentInvertedIndex}.
 	 */
-	private final ThreadSafeInvertedIndex ind;
+	private final InvertedIndex ind;
 
 	/**
 	 * Amount of threads to be used.
@@ -30,25 +31,66 @@ public class ThreadSafeResultsBuilder extends ResultsBuilder {
 	final int threads;
 
 	/**
-	 * Queue that will allow tasks to work through.
+	 * Shared queue that will allow tasks to work through, shut down by its
+	 * owner. Should be bounded, so reading a large query file waits for the
+	 * searches instead of queueing every line.
 	 */
-	private WorkQueue queue;
+	private final WorkQueue queue;
 
 	/**
-	 * Sets the threads and thread-safe inverted index to the passed in values.
+	 * Recent pages of search results.
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * Shares a single search among identical searches running at the same time.
+	 */
+	private final SingleFlight<String, List<CompareSearch>> inFlight;
+
+	/**
+	 * Sets the shared work queue and thread-safe inverted index to the passed in
+	 * values.
+	 * 
+	 * @param ind   the thread-safe inverted index to be created
+	 * @param queue the shared work queue to run tasks on
+	 */
+	public ThreadSafeResultsBuilder(InvertedIndex ind, WorkQueue queue) {
+		this(ind, queue, new QueryResults());
+	}
+
+	/**
+	 * Sets the shared work queue, thread-safe inverted index, and where results
+	 * are stored to the passed in values.
 	 * 
 	 * @param ind     the thread-safe inverted index to be created
-	 * @param threads amount of threads to be used.
+	 * @param queue   the shared work queue to run tasks on
+	 * @param results where the results of each query are stored
 	 */
-	public ThreadSafeResultsBuilder(ThreadSafeInvertedIndex ind, int threads) {
-		super(ind);
-		this.threads = threads;
+	public ThreadSafeResultsBuilder(InvertedIndex ind, WorkQueue queue, QueryResults results) {
+		this(ind, queue, results, new QueryCache());
+	}
+
+	/**
+	 * Sets the shared work queue, thread-safe inverted index, where results are
+	 * stored, and the cache of recent pages of results to the passed in values.
+	 * 
+	 * @param ind     the thread-safe inverted index to be created
+	 * @param queue   the shared work queue to run tasks on
+	 * @param results where the results of each query are stored
+	 * @param cache   the cache of recent pages of results
+	 */
+	public ThreadSafeResultsBuilder(InvertedIndex ind, WorkQueue queue, QueryResults results, QueryCache cache) {
+		super(ind, results);
+		this.threads = queue.size();
 		this.ind = ind;
-		this.queue = new WorkQueue(threads);
+		this.queue = queue;
+		this.cache = cache;
+		this.inFlight = new SingleFlight<>();
 	}
 
 	/**
-	 * Parses through lines in a file and executes tasks.
+	 * Parses through lines in a file and executes tasks, waiting for only these
+	 * tasks to finish. The shared work queue stays running for later searches.
 	 *
 	 * @param inputFile the file that is being read
 	 * @param exact     if there is an exact flag provided in the arguments do an
@@ -60,49 +102,122 @@ public class ThreadSafeResultsBuilder extends ResultsBuilder {
 		try (BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8)) {
 
 			String curr = null;
+			WorkGroup group = new WorkGroup(queue);
 
 			while ((curr = reader.readLine()) != null) {
 				TaskSearch p = new TaskSearch(curr, exact);
-				queue.execute(p);
+				group.execute(p);
 			}
 			try {
-				queue.finish();
+				group.finish();
 			} catch (InterruptedException e) {
 				Thread.currentThread().interrupt();
 			}
-			queue.shutdown();
 		}
 	}
 
 	/**
-	 * Executes line search tasks.
+	 * Searches for a single page of the best results of a line using the work
+	 * queue, so the caller can give up on it. The search stops early once the
+	 * returned future is cancelled or the deadline passes.
 	 *
-	 * @param line  line to be executed
-	 * @param exact if there is an exact flag provided in the arguments do an exact
-	 *              search, if not, partial search
+	 * @param line    line to be parsed, stemmed, and searched for
+	 * @param exact   if there is an exact flag provided in the arguments do an
+	 *                exact search, if not, partial search
+	 * @param k       the maximum number of results to return
+	 * @param offset  the number of best results to skip
+	 * @param timeout how long the search may take
+	 * @return a future completed with the page of results
+	 * @see #search(String, boolean, int, int)
 	 */
-	public void parseSearch(String line, boolean exact) {
-		queue.execute(new TaskSearch(line, exact));
+	public CompletableFuture<List<CompareSearch>> submitSearch(String line, boolean exact, int k, int offset,
+			Duration timeout) {
+		return queue.submit(() -> search(line, exact, k, offset), timeout);
 	}
 
 	/**
-	 * Get search results.
+	 * Stems a line and searches for a single page of its best results. Pages
+	 * searched recently are returned from the cache while the index is unchanged,
+	 * and identical searches running at the same time share one computation.
 	 *
-	 * @param line line to be parsed, stemmed, and create results for.
-
-	 * @return search results for the query
+	 * @param line   line to be parsed, stemmed, and searched for
+	 * @param exact  if there is an exact flag provided in the arguments do an exact
+	 *               search, if not, partial search
+	 * @param k      the maximum number of results to return
+	 * @param offset the number of best results to skip
+	 * @return sorted list of at most k results, starting after the offset
 	 */
-	public List<CompareSearch> getSearches(String line) {
+	public List<CompareSearch> search(String line, boolean exact, int k, int offset) {
 		TreeSet<String> stemmed = TextFileStemmer.uniqueStems(line);
 		if (stemmed.isEmpty()) {
 			return Collections.unmodifiableList(Collections.emptyList());
 		}
-		line = String.join(" ", stemmed);
-		Map<String, List<CompareSearch>> searchMap = ind.getCompareMap();
-		if (searchMap.containsKey(line)) {
-			return Collections.unmodifiableList(searchMap.get(line));
+		String query = String.join(" ", stemmed);
+
+		/* Read first, so results racing with an add are cached as out of date. */
+		long version = ind.getVersion();
+		List<CompareSearch> found = cache.get(query, exact, k, offset, version);
+		if (found == null) {
+			String key = String.join(":", Long.toString(version), Boolean.toString(exact), Integer.toString(k),
+					Integer.toString(offset), query);
+			found = inFlight.run(key, () -> {
+				List<CompareSearch> page = Collections.unmodifiableList(ind.search(query, exact, k, offset));
+				cache.put(query, exact, k, offset, version, page);
+				return page;
+			});
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the cache of recent pages of results, to check how often it is
+	 * used.
+	 *
+	 * @return the cache of recent pages of results
+	 */
+	public QueryCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Returns the work queue searches run on, to check how busy it is.
+	 *
+	 * @return the shared work queue
+	 */
+	public WorkQueue getQueue() {
+		return queue;
+	}
+
+	/**
+	 * Stems and searches for a line of a query file, storing its results. Each
+	 * line stems and scores its own query, then publishes the finished results
+	 * into the concurrent query results, so searches never wait on each other.
+	 * The stored results are keyed by the stemmed query alone, since a query file
+	 * is searched with one exact flag after the index is built; other searches go
+	 * through {@link #search(String, boolean, int, int)}, which checks both.
+	 *
+	 * @param line  line to be parsed, stemmed, and searched for
+	 * @param exact if there is an exact flag provided in the arguments do an exact
+	 *              search, if not, partial search
+	 * @return the sorted results of the line
+	 */
+	private List<CompareSearch> searchLine(String line, boolean exact) {
+		Set<String> stemmedLine = TextFileStemmer.uniqueStems(line);
+		String stemmed = String.join(" ", stemmedLine);
+		if (stemmed.isEmpty()) {
+			return Collections.unmodifiableList(Collections.emptyList());
+		}
+
+		List<CompareSearch> found = results.get(stemmed);
+		if (found == null) {
+			/* Repeated lines share one search while the first is still running. */
+			found = inFlight.run(exact + ":" + stemmed, () -> {
+				List<CompareSearch> computed = ind.search(stemmed, exact);
+				results.put(stemmed, computed);
+				return computed;
+			});
 		}
-		return Collections.unmodifiableList(Collections.emptyList());
+		return Collections.unmodifiableList(found);
 	}
 
 	/**
@@ -117,7 +232,7 @@ public class ThreadSafeResultsBuilder extends ResultsBuilder {
 		/**
 		 * the line to be read and passed in.
 		 */
-		private String line;
+		private final String line;
 
 		/**
 		 * Check to see if exact search.
@@ -137,17 +252,11 @@ public class ThreadSafeResultsBuilder extends ResultsBuilder {
 
 		/**
 		 * Give the threads their work to do through the WorkQueue. Search through the
-		 * ThreadSafeInvertedIndex map.
+		 * thread-safe inverted index.
 		 */
 		@Override
 		public void run() {
-			synchronized (ind) {
-				Set<String> stemmedLine = TextFileStemmer.uniqueStems(line);
-				line = String.join(" ", stemmedLine);
-				if (!line.isBlank() || !line.isEmpty()) {
-					ind.search(line, exact);
-				}
-			}
+			searchLine(line, exact);
 		}
 	}
 }
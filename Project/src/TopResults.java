@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps only the best search results seen so far, using a bounded heap ordered
+ * so the worst result kept is always on top. Adding a result costs O(log n)
+ * where n is the number of results kept, instead of sorting every match.
+ *
+ * Warning: This class is not thread-safe. Each search should use its own
+ * results.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class TopResults {
+
+	/**
+	 * The results kept, with the worst result at the head.
+	 */
+	private final PriorityQueue<CompareSearch> heap;
+
+	/**
+	 * The maximum number of results kept.
+	 */
+	private final int limit;
+
+	/**
+	 * Initializes an empty set of results.
+	 *
+	 * @param limit the maximum number of results to keep
+	 */
+	public TopResults(int limit) {
+		this.limit = Math.max(limit, 0);
+		this.heap = new PriorityQueue<>(Math.min(this.limit, 1024) + 1, Collections.reverseOrder());
+	}
+
+	/**
+	 * Returns whether a result with this score could be kept. Results with a lower
+	 * score than the worst result kept can be skipped without being created.
+	 *
+	 * @param score the score of a possible result
+	 * @return true if a result with this score may be kept
+	 */
+	public boolean competes(double score) {
+		if (this.limit == 0) {
+			return false;
+		}
+		return this.heap.size() < this.limit || score >= this.heap.peek().getScore();
+	}
+
+	/**
+	 * Adds a result if it is better than the worst result kept, removing the worst
+	 * result if there are too many.
+	 *
+	 * @param result the result to add
+	 * @return true if the result was kept
+	 */
+	public boolean offer(CompareSearch result) {
+
+		if (this.heap.size() < this.limit) {
+			this.heap.add(result);
+			return true;
+		}
+
+		if (this.limit > 0 && result.compareTo(this.heap.peek()) < 0) {
+			this.heap.poll();
+			this.heap.add(result);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the maximum number of results are kept.
+	 *
+	 * @return true if no more results can be added without removing one
+	 */
+	public boolean isFull() {
+		return this.heap.size() >= this.limit;
+	}
+
+	/**
+	 * Returns the score of the worst result kept.
+	 *
+	 * @return the lowest score kept, or 0 if there are no results
+	 */
+	public double getThreshold() {
+		return this.heap.isEmpty() ? 0 : this.heap.peek().getScore();
+	}
+
+	/**
+	 * Returns the results kept in sorted order, skipping the first few results.
+	 *
+	 * @param offset the number of best results to skip
+	 * @return sorted list of the results after the offset
+	 */
+	public List<CompareSearch> getResults(int offset) {
+
+		List<CompareSearch> results = new ArrayList<>(this.heap);
+		Collections.sort(results);
+		if (offset >= results.size()) {
+			return new ArrayList<>();
+		}
+		return new ArrayList<>(results.subList(Math.max(offset, 0), results.size()));
+	}
+}
@@ -2,12 +2,20 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashSet;
 import java.util.Set;
-
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
  * A thread-safe utility class for crawling the inverted index.
  *
+ * By default each page is fetched and parsed by the same task on the work
+ * queue, so only as many pages as there are worker threads are fetched at
+ * once. When a maximum number of fetches is given, each page is instead
+ * fetched on its own virtual thread, with a semaphore limiting how many are
+ * fetched at once, and only the parsing and stemming of the page is added to
+ * the work queue.
+ *
  * @author Carlos Portillo
  * @author CS 212 Software Development
  * @author University of San Francisco
@@ -18,12 +26,13 @@ public class WebCrawler {
 	/**
 	 * The thread-safe inverted index to be crawled.
 	 */
-	private final ThreadSafeInvertedIndex ind;
+	private final InvertedIndex ind;
 
 	/**
-	 * The work queue to be used to crawl the inverted index.
+	 * The tasks of the crawl, run on a shared work queue that is shut down by its
+	 * owner.
 	 */
-	private WorkQueue queue;
+	private final WorkGroup group;
 
 	/**
 	 * The limit of urls to be used.
@@ -35,36 +44,138 @@ public class WebCrawler {
 	 */
 	private final Set<URL> linkset;
 
+	/**
+	 * The index each worker adds pages to, added to the thread-safe inverted
+	 * index whenever it grows large.
+	 */
+	private final IndexBuffers buffers;
+
+	/**
+	 * The most pages fetched at once on their own threads, or 0 to fetch pages on
+	 * the work queue.
+	 */
+	private final int maxFetches;
+
+	/**
+	 * Limits the number of pages fetched at once on their own threads.
+	 */
+	private final Semaphore fetches;
+
+	/**
+	 * Runs the fetches of the current crawl on their own threads, or
+	 * {@code null} to fetch pages on the work queue.
+	 */
+	private volatile ExecutorService fetcher;
+
+	/**
+	 * Constructs the Web Crawler.
+	 * 
+	 * @param ind   the thread-safe inverted index to be created
+	 * @param queue the shared work queue to run tasks on
+	 * @param limit limit of urls to be used
+	 */
+	public WebCrawler(int limit, InvertedIndex ind, WorkQueue queue) {
+		this(limit, ind, queue, IndexBuffers.DEFAULT_THRESHOLD);
+	}
+
 	/**
 	 * Constructs the Web Crawler.
 	 * 
-	 * @param ind     the thread-safe inverted index to be created
-	 * @param threads amount of threads to be used.
-	 * @param limit   limit of urls to be used
+	 * @param ind       the thread-safe inverted index to be created
+	 * @param queue     the shared work queue to run tasks on
+	 * @param limit     limit of urls to be used
+	 * @param flushSize the number of positions each worker adds to its own index
+	 *                  before adding it to the thread-safe inverted index
 	 */
-	public WebCrawler(int limit, ThreadSafeInvertedIndex ind, int threads) {
+	public WebCrawler(int limit, InvertedIndex ind, WorkQueue queue, int flushSize) {
+		this(limit, ind, queue, flushSize, 0);
+	}
+
+	/**
+	 * Constructs the Web Crawler.
+	 * 
+	 * @param ind        the thread-safe inverted index to be created
+	 * @param queue      the shared work queue to parse pages on
+	 * @param limit      limit of urls to be used
+	 * @param flushSize  the number of positions each worker adds to its own
+	 *                   index before adding it to the thread-safe inverted index
+	 * @param maxFetches the most pages fetched at once on their own threads, or 0
+	 *                   to fetch pages on the work queue
+	 */
+	public WebCrawler(int limit, InvertedIndex ind, WorkQueue queue, int flushSize, int maxFetches) {
 		this.ind = ind;
 		this.limit = limit;
-		this.queue = new WorkQueue(threads);
+		this.group = new WorkGroup(queue);
 		this.linkset = new HashSet<>();
+		this.buffers = new IndexBuffers(flushSize, ind::addAll);
+		this.maxFetches = Math.max(maxFetches, 0);
+		this.fetches = new Semaphore(Math.max(maxFetches, 1));
 	}
 
 	/**
-	 * Crawl the urls and execute them.
+	 * Crawl the urls and execute them. Pages left in the index of each worker are
+	 * added to the thread-safe inverted index once the crawl is done.
 	 * 
 	 * @param url url to be crawled.
 	 * @throws MalformedURLException
 	 */
 	public void crawl(String url) throws MalformedURLException {
 
-		linkset.add(new URL(url));
-		queue.execute(new AddWebTask(new URL(url)));
+		URL seed = new URL(url);
+		if (maxFetches > 0) {
+			fetcher = newFetcher(maxFetches);
+		}
+		linkset.add(seed);
+		schedule(seed);
 		try {
-			queue.finish();
+			group.finish();
+			buffers.flush();
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
+		} finally {
+			if (fetcher != null) {
+				fetcher.shutdown();
+				fetcher = null;
+			}
+		}
+	}
+
+	/**
+	 * Adds the task that fetches and parses a url, fetching on its own thread if
+	 * there is a fetcher.
+	 * 
+	 * @param url url to be crawled.
+	 */
+	private void schedule(URL url) {
+		ExecutorService current = fetcher;
+		if (current == null) {
+			group.execute(new AddWebTask(url, null));
+		} else {
+			group.execute(current, new FetchTask(url));
+		}
+	}
+
+	/**
+	 * Creates the threads pages are fetched on. Each fetch gets its own virtual
+	 * thread when the runtime has them, since a blocked virtual thread costs
+	 * little more than the socket it waits on. Otherwise platform threads are
+	 * used, at most one for each page fetched at once.
+	 * 
+	 * @param maxFetches the most pages fetched at once
+	 * @return the threads to fetch pages on
+	 */
+	private static ExecutorService newFetcher(int maxFetches) {
+
+		try {
+			// looked up when run, so this still builds and runs on older versions of Java
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newFixedThreadPool(maxFetches, r -> {
+				Thread thread = new Thread(r, "fetcher");
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
-		queue.shutdown();
 	}
 
 	/**
@@ -73,14 +184,58 @@ public class WebCrawler {
 	 * @param url   url to be crawled.
 	 * @param index inverted index to be created
 	 * @param html  the html to be stripped and parsed to get the text.
+	 * @return the number of positions in the page
 	 */
-	public void stemmingLinks(String url, String html, InvertedIndex index) {
+	public int stemmingLinks(String url, String html, InvertedIndex index) {
 		int position = 0;
-		SnowballStemmer stemmer = new SnowballStemmer(TextFileStemmer.DEFAULT);
 		String[] stems = TextParser.parse(html);
 		for (String curr : stems) {
 			position++;
-			index.addToMap(stemmer.stem(curr).toString(), url, position);
+			index.addToMap(TextFileStemmer.stem(curr), url, position);
+		}
+		return position;
+	}
+
+	/**
+	 * Fetches a page on its own thread, waiting while too many pages are being
+	 * fetched already, then adds the parsing of the page to the work queue.
+	 */
+	private class FetchTask implements Runnable {
+
+		/**
+		 * The url to be fetched.
+		 */
+		private final URL url;
+
+		/**
+		 * Initializes this task.
+		 * 
+		 * @param url url to be fetched.
+		 */
+		public FetchTask(URL url) {
+			this.url = url;
+		}
+
+		/**
+		 * Fetches the page and adds the task that parses it.
+		 */
+		@Override
+		public void run() {
+			String html;
+			try {
+				fetches.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			try {
+				html = HtmlFetcher.fetch(url, 3);
+			} finally {
+				fetches.release();
+			}
+			if (html != null) {
+				group.execute(new AddWebTask(url, html));
+			}
 		}
 	}
 
@@ -98,13 +253,21 @@ public class WebCrawler {
 		 */
 		private final URL url;
 
+		/**
+		 * The html of the url if already fetched, or {@code null} to fetch it.
+		 */
+		private final String fetched;
+
 		/**
 		 * Initializes this task.
 		 * 
-		 * @param url url to be crawled.
+		 * @param url     url to be crawled.
+		 * @param fetched the html of the url if already fetched, or {@code null} to
+		 *                fetch it
 		 */
-		public AddWebTask(URL url) {
+		public AddWebTask(URL url, String fetched) {
 			this.url = url;
+			this.fetched = fetched;
 		}
 
 		/**
@@ -114,21 +277,19 @@ public class WebCrawler {
 		@Override
 		public void run() {
 			try {
-				String html = HtmlFetcher.fetch(url, 3);
+				String html = fetched != null ? fetched : HtmlFetcher.fetch(url, 3);
 				if (html == null) {
 					return;
 				}
 
 				HtmlCleaner cleaner = new HtmlCleaner(this.url, html);
-				InvertedIndex index = new InvertedIndex();
-				stemmingLinks(this.url.toString(), cleaner.text, index);
-				ind.addAll(index);
+				buffers.added(stemmingLinks(this.url.toString(), cleaner.text, buffers.get()));
 
 				synchronized (linkset) {
 					for (URL url : cleaner.urls) {
 						if (!linkset.contains(url) && linkset.size() < limit) {
 							linkset.add(url);
-							queue.execute(new AddWebTask(url));
+							schedule(url);
 						}
 					}
 				}
@@ -0,0 +1,117 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the work a single component adds to a shared {@link WorkQueue}, so
+ * the component can wait for its own work to finish without waiting for, or
+ * shutting down, the work of anyone else using the same queue. Work run
+ * somewhere else, such as blocking I/O on its own threads, can be tracked by
+ * the same group.
+ *
+ * This class is thread-safe.
+ *
+ * @author Carlos Portillo
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @version Spring 2020
+ */
+public class WorkGroup {
+
+	/**
+	 * The shared work queue that runs the work.
+	 */
+	private final WorkQueue queue;
+
+	/**
+	 * Amount of pending tasks added through this group.
+	 */
+	private final AtomicInteger pending;
+
+	/**
+	 * Initializes a group with no pending work.
+	 *
+	 * @param queue the shared work queue that runs the work
+	 */
+	public WorkGroup(WorkQueue queue) {
+		this.queue = queue;
+		this.pending = new AtomicInteger();
+	}
+
+	/**
+	 * Adds a work request to the shared queue as part of this group. If the queue
+	 * is shut down before the request runs, it no longer counts as pending.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 */
+	public void execute(Runnable r) {
+		pending.incrementAndGet();
+		queue.execute(track(r), this::decrementPending);
+	}
+
+	/**
+	 * Runs a work request on another executor as part of this group, so
+	 * {@link #finish()} also waits for it.
+	 *
+	 * @param executor the executor to run the work request on
+	 * @param r        work request (in the form of a {@link Runnable} object)
+	 */
+	public void execute(Executor executor, Runnable r) {
+		pending.incrementAndGet();
+		try {
+			executor.execute(track(r));
+		} catch (RuntimeException e) {
+			// rejected, so it will never run
+			decrementPending();
+			throw e;
+		}
+	}
+
+	/**
+	 * Wraps a work request so it no longer counts as pending once it finishes.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 * @return the wrapped work request
+	 */
+	private Runnable track(Runnable r) {
+		return () -> {
+			try {
+				r.run();
+			} finally {
+				decrementPending();
+			}
+		};
+	}
+
+	/**
+	 * Waits for all pending work added through this group to be finished.
+	 *
+	 * @throws InterruptedException if interrupted
+	 */
+	public void finish() throws InterruptedException {
+		synchronized (this) {
+			while (pending.get() > 0) {
+				this.wait();
+			}
+		}
+	}
+
+	/**
+	 * Decrement the pending tasks and notify's when done.
+	 */
+	private void decrementPending() {
+		if (pending.decrementAndGet() == 0) {
+			synchronized (this) {
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads of the shared queue.
+	 *
+	 * @return number of worker threads
+	 */
+	public int size() {
+		return queue.size();
+	}
+}
@@ -1,9 +1,50 @@
-import java.util.LinkedList;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * A simple work queue implementation based on the IBM Developer article by
- * Brian Goetz. It is up to the user of this class to keep track of whether
- * there is any pending work remaining.
+ * A work queue implementation with a separate queue of work for each worker
+ * thread, based on the IBM Developer article by Brian Goetz. It is up to the
+ * user of this class to keep track of whether there is any pending work
+ * remaining.
+ *
+ * Work added by a worker thread, such as a task that adds more tasks, goes on
+ * the front of that worker's own queue. Work added by any other thread goes on
+ * a shared queue. A worker runs work from the front of its own queue first,
+ * then from the shared queue, and then steals from the back of the other
+ * workers' queues. None of these queues are locked. A worker with nothing to do
+ * parks until work is added, and adding work only wakes a single parked worker.
+ *
+ * A work queue can also be bounded, so a thread adding work faster than the
+ * workers run it does not fill memory with waiting work. Once the capacity is
+ * reached, the thread adding work either waits for room or runs the work
+ * itself, depending on the {@link Policy}.
+ *
+ * Work added with {@link #submit(Callable, Duration)} returns a future that
+ * completes with its result, so a caller can wait for its own work instead of
+ * all of it. Cancelling the future, or reaching its deadline, skips the work if
+ * it has not started. Work already running stops at the next call to
+ * {@link #checkCancelled()}.
+ *
+ * Work still waiting when the queue is shut down is dropped without running.
+ * Dropping the work of {@link #submit(Callable, Duration)} cancels its future,
+ * and {@link #execute(Runnable, Runnable)} takes what to do instead, so no one
+ * waits forever for work that will never run.
+ *
+ * Every work queue counts the work submitted, completed, and failed, and keeps
+ * a {@link LatencyHistogram} of how long work waited before it started and how
+ * long it ran, so it is possible to tell whether more threads would help.
  *
  * @see <a href=
  *      "https://www.ibm.com/developerworks/library/j-jtp0730/index.html"> Java
@@ -14,7 +55,7 @@ public class WorkQueue {
 	/**
 	 * Amount of pending tasks.
 	 */
-	private int pending = 0;
+	private final AtomicInteger pending;
 
 	/**
 	 * Pool of worker threads that will wait in the background until work is
@@ -23,20 +64,90 @@ public class WorkQueue {
 	private final PoolWorker[] workers;
 
 	/**
-	 * Queue of pending work requests.
+	 * Queue of pending work requests added by threads that are not workers.
+	 */
+	private final Queue<Task> queue;
+
+	/**
+	 * Workers that are parked or about to park, in the order they became idle. A
+	 * worker may be listed after it found work again, so a worker taken from here
+	 * is only woken if it is still idle.
 	 */
-	private final LinkedList<Runnable> queue;
+	private final Queue<PoolWorker> idle;
 
 	/**
 	 * Used to signal the queue should be shutdown.
 	 */
 	private volatile boolean shutdown;
 
+	/**
+	 * The most work requests waiting to run before work is added according to
+	 * the policy.
+	 */
+	private final int capacity;
+
+	/**
+	 * What happens to work added once the capacity is reached.
+	 */
+	private final Policy policy;
+
+	/**
+	 * Amount of work requests waiting to run.
+	 */
+	private final AtomicInteger queued;
+
+	/**
+	 * Amount of threads waiting for room to add work.
+	 */
+	private final AtomicInteger blocked;
+
+	/**
+	 * Whether the current thread is running work itself because the queue was
+	 * full, in which case any work it adds is queued instead.
+	 */
+	private final ThreadLocal<Boolean> callerRunning;
+
+	/**
+	 * Amount of work requests added.
+	 */
+	private final LongAdder submitted;
+
+	/**
+	 * Amount of work requests that finished running, including those that failed.
+	 */
+	private final LongAdder completed;
+
+	/**
+	 * Amount of work requests that threw an exception.
+	 */
+	private final LongAdder failed;
+
+	/**
+	 * How long work requests waited between being added and starting to run.
+	 */
+	private final LatencyHistogram waitTimes;
+
+	/**
+	 * How long work requests took to run.
+	 */
+	private final LatencyHistogram runTimes;
+
 	/**
 	 * The default number of threads to use when not specified.
 	 */
 	public static final int DEFAULT = 5;
 
+	/**
+	 * A capacity for bounded work queues, enough to keep the workers busy while
+	 * the thread adding work catches up.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The future of the submitted work running in the current thread, if any.
+	 */
+	private static final ThreadLocal<CompletableFuture<?>> CURRENT = new ThreadLocal<>();
+
 	/**
 	 * Starts a work queue with the default number of threads.
 	 *
@@ -52,29 +163,286 @@ public class WorkQueue {
 	 * @param threads number of worker threads; should be greater than 1
 	 */
 	public WorkQueue(int threads) {
-		this.queue = new LinkedList<Runnable>();
+		this(threads, Integer.MAX_VALUE, Policy.BLOCK);
+	}
+
+	/**
+	 * Starts a bounded work queue with the specified number of threads.
+	 *
+	 * @param threads  number of worker threads; should be greater than 1
+	 * @param capacity the most work requests waiting to run before work is added
+	 *                 according to the policy
+	 * @param policy   what happens to work added once the capacity is reached
+	 */
+	public WorkQueue(int threads, int capacity, Policy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The work queue capacity must be positive.");
+		}
+		this.queue = new ConcurrentLinkedQueue<Task>();
+		this.idle = new ConcurrentLinkedQueue<PoolWorker>();
+		this.pending = new AtomicInteger();
 		this.workers = new PoolWorker[threads];
+		this.capacity = capacity;
+		this.policy = policy;
+		this.queued = new AtomicInteger();
+		this.blocked = new AtomicInteger();
+		this.callerRunning = ThreadLocal.withInitial(() -> false);
+		this.submitted = new LongAdder();
+		this.completed = new LongAdder();
+		this.failed = new LongAdder();
+		this.waitTimes = new LatencyHistogram();
+		this.runTimes = new LatencyHistogram();
 
 		this.shutdown = false;
 
-		// start the threads so they are waiting in the background
+		// create every worker before starting any, since workers steal from each other
 		for (int i = 0; i < threads; i++) {
 			workers[i] = new PoolWorker();
+		}
+
+		// start the threads so they are waiting in the background
+		for (int i = 0; i < threads; i++) {
 			workers[i].start();
 		}
 	}
 
 	/**
 	 * Adds a work request to the queue. A thread will process this request when
-	 * available.
+	 * available. If the queue is full, either waits for room or runs the work
+	 * request right away, depending on the policy. Workers never wait for room,
+	 * since the work they would wait for may be waiting on them.
 	 *
 	 * @param r work request (in the form of a {@link Runnable} object)
 	 */
 	public void execute(Runnable r) {
-		incrementPending();
-		synchronized (queue) {
-			queue.addLast(r);
-			queue.notifyAll();
+		execute(r, null);
+	}
+
+	/**
+	 * Adds a work request to the queue, along with what to do instead if the
+	 * queue is shut down before the request starts.
+	 *
+	 * @param r       work request (in the form of a {@link Runnable} object)
+	 * @param dropped run instead of the work request if it is dropped, or
+	 *                {@code null} to do nothing
+	 * @see #execute(Runnable)
+	 */
+	public void execute(Runnable r, Runnable dropped) {
+		pending.incrementAndGet();
+		submitted.increment();
+
+		Thread current = Thread.currentThread();
+		boolean worker = current instanceof PoolWorker && ((PoolWorker) current).getQueue() == this;
+
+		if (queued.get() >= capacity) {
+			if (policy == Policy.CALLER_RUNS && !callerRunning.get()) {
+				runHere(r);
+				return;
+			}
+			if (policy == Policy.BLOCK && !worker) {
+				awaitRoom();
+			}
+		}
+
+		Task task = new Task(r, dropped, System.nanoTime());
+		queued.incrementAndGet();
+		if (worker) {
+			((PoolWorker) current).local.addFirst(task);
+		} else {
+			queue.add(task);
+		}
+
+		if (shutdown) {
+			// added after the queue was emptied, so no worker will take it
+			dropQueued();
+			return;
+		}
+		wakeOne();
+	}
+
+	/**
+	 * Adds work that returns a result to the queue.
+	 *
+	 * @param <T>  the type of result
+	 * @param task the work to run
+	 * @return a future completed with the result of the work
+	 * @see #submit(Callable, Duration)
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task) {
+		return submit(task, null);
+	}
+
+	/**
+	 * Adds work that returns a result to the queue, with a deadline. The future
+	 * completes with the result, or with the exception the work threw. Once the
+	 * future is cancelled or the deadline passes, the work is skipped if it has
+	 * not started, and {@link #checkCancelled()} throws within the work if it
+	 * has.
+	 *
+	 * @param <T>     the type of result
+	 * @param task    the work to run
+	 * @param timeout how long the work may take from now, or {@code null} for no
+	 *                deadline
+	 * @return a future completed with the result of the work, or exceptionally
+	 *         with a {@link java.util.concurrent.TimeoutException} at the
+	 *         deadline
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task, Duration timeout) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		if (timeout != null) {
+			future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+		}
+
+		Runnable cancel = () -> future.completeExceptionally(new CancellationException("Work queue shut down."));
+		execute(() -> {
+			if (future.isDone()) {
+				return;
+			}
+
+			CompletableFuture<?> outer = CURRENT.get();
+			CURRENT.set(future);
+			try {
+				future.complete(task.call());
+			} catch (CancellationException e) {
+				future.completeExceptionally(e);
+			} catch (Exception e) {
+				failed.increment();
+				future.completeExceptionally(e);
+			} catch (Error e) {
+				failed.increment();
+				future.completeExceptionally(e);
+				throw e;
+			} finally {
+				CURRENT.set(outer);
+			}
+		}, cancel);
+		return future;
+	}
+
+	/**
+	 * Returns whether the submitted work running in the current thread was
+	 * cancelled or passed its deadline.
+	 *
+	 * @return {@code true} if the current work should stop
+	 */
+	public static boolean isCancelled() {
+		CompletableFuture<?> current = CURRENT.get();
+		return current != null && current.isDone();
+	}
+
+	/**
+	 * Stops the submitted work running in the current thread if it was cancelled
+	 * or passed its deadline. Long-running work calls this now and then.
+	 *
+	 * @throws CancellationException if the current work should stop
+	 */
+	public static void checkCancelled() {
+		if (isCancelled()) {
+			throw new CancellationException("Work cancelled or past its deadline.");
+		}
+	}
+
+	/**
+	 * Waits for the result of other work, such as work shared with another
+	 * caller. If called from submitted work, stops waiting once that work is
+	 * cancelled or passes its deadline, instead of waiting as long as the other
+	 * work takes.
+	 *
+	 * @param <T>   the type of result
+	 * @param other the other work
+	 * @return the result of the other work
+	 * @throws CancellationException if the other work or the current work was
+	 *                               cancelled
+	 * @throws CompletionException   if the other work failed
+	 */
+	public static <T> T await(CompletableFuture<T> other) {
+
+		CompletableFuture<?> current = CURRENT.get();
+		if (current != null) {
+			try {
+				CompletableFuture.anyOf(other, current).join();
+			} catch (CancellationException | CompletionException e) {
+				// whichever finished first is checked below
+			}
+			if (!other.isDone()) {
+				checkCancelled();
+			}
+		}
+		return other.join();
+	}
+
+	/**
+	 * Runs a work request in the thread that added it.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 */
+	private void runHere(Runnable r) {
+		callerRunning.set(true);
+		try {
+			long now = System.nanoTime();
+			run(r, now, now);
+		} finally {
+			callerRunning.set(false);
+		}
+	}
+
+	/**
+	 * Runs a work request, recording how long it waited and ran.
+	 *
+	 * @param r        work request (in the form of a {@link Runnable} object)
+	 * @param queuedAt when the work request was added, from
+	 *                 {@link System#nanoTime()}
+	 * @param started  when the work request was taken to run
+	 * @return when the work request finished running
+	 */
+	private long run(Runnable r, long queuedAt, long started) {
+		long finished = started;
+		waitTimes.record(started - queuedAt);
+		try {
+			r.run();
+		} catch (RuntimeException ex) {
+			// catch runtime exceptions to avoid leaking threads
+			failed.increment();
+			System.err.println("Warning: Work queue encountered an exception while running.");
+		} finally {
+			finished = System.nanoTime();
+			runTimes.record(finished - started);
+			completed.increment();
+			decrementPending();
+		}
+		return finished;
+	}
+
+	/**
+	 * Waits until fewer work requests than the capacity are waiting to run, or
+	 * the queue is shutdown. The work request is added anyway if interrupted.
+	 */
+	private void awaitRoom() {
+		synchronized (blocked) {
+			blocked.incrementAndGet();
+			try {
+				while (queued.get() >= capacity && !shutdown) {
+					blocked.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				blocked.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Records that a work request was taken to run, waking the threads waiting
+	 * for room if there are any.
+	 */
+	private void taken() {
+		// counted down before checking for waiting threads, which count up before checking for room
+		queued.decrementAndGet();
+		if (blocked.get() > 0) {
+			synchronized (blocked) {
+				blocked.notifyAll();
+			}
 		}
 	}
 
@@ -85,27 +453,55 @@ public class WorkQueue {
 	 */
 	public void finish() throws InterruptedException {
 		synchronized (this) {
-			while (pending > 0) {
+			while (pending.get() > 0) {
 				this.wait();
 			}
 		}
 	}
 
 	/**
-	 * Increment the pending tasks.
+	 * Drops every work request still waiting in the shared queue or the queue of
+	 * any worker, running what was given to do instead.
+	 */
+	private void dropQueued() {
+
+		Task task;
+		while ((task = queue.poll()) != null) {
+			drop(task);
+		}
+		for (PoolWorker worker : workers) {
+			while ((task = worker.local.pollFirst()) != null) {
+				drop(task);
+			}
+		}
+	}
+
+	/**
+	 * Drops a single work request taken from a queue without running it.
+	 *
+	 * @param task the work request to drop
 	 */
-	private synchronized void incrementPending() {
-		pending++;
+	private void drop(Task task) {
+		taken();
+		try {
+			if (task.dropped != null) {
+				task.dropped.run();
+			}
+		} catch (RuntimeException ex) {
+			System.err.println("Warning: Work queue encountered an exception while dropping work.");
+		} finally {
+			decrementPending();
+		}
 	}
 
 	/**
 	 * Decrement the pending tasks and notify's when done.
 	 */
-	private synchronized void decrementPending() {
-		pending--;
-
-		if (pending == 0) {
-			this.notifyAll();
+	private void decrementPending() {
+		if (pending.decrementAndGet() == 0) {
+			synchronized (this) {
+				this.notifyAll();
+			}
 		}
 	}
 
@@ -116,9 +512,14 @@ public class WorkQueue {
 	public void shutdown() {
 		// safe to do unsynchronized due to volatile keyword
 		shutdown = true;
+		dropQueued();
+
+		for (PoolWorker worker : workers) {
+			LockSupport.unpark(worker);
+		}
 
-		synchronized (queue) {
-			queue.notifyAll();
+		synchronized (blocked) {
+			blocked.notifyAll();
 		}
 	}
 
@@ -131,6 +532,109 @@ public class WorkQueue {
 		return workers.length;
 	}
 
+	/**
+	 * Returns the number of work requests added.
+	 *
+	 * @return number of work requests added
+	 */
+	public long getSubmitted() {
+		return submitted.sum();
+	}
+
+	/**
+	 * Returns the number of work requests that finished running, including those
+	 * that failed.
+	 *
+	 * @return number of work requests finished
+	 */
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	/**
+	 * Returns the number of work requests that threw an exception, or whose
+	 * future was completed with one other than a cancellation.
+	 *
+	 * @return number of work requests failed
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * Returns the number of work requests waiting to run.
+	 *
+	 * @return the current depth of the queue
+	 */
+	public int getQueued() {
+		return Math.max(queued.get(), 0);
+	}
+
+	/**
+	 * Returns how long work requests waited between being added and starting to
+	 * run.
+	 *
+	 * @return histogram of wait times in nanoseconds
+	 */
+	public LatencyHistogram getWaitTimes() {
+		return waitTimes;
+	}
+
+	/**
+	 * Returns how long work requests took to run.
+	 *
+	 * @return histogram of run times in nanoseconds
+	 */
+	public LatencyHistogram getRunTimes() {
+		return runTimes;
+	}
+
+	/**
+	 * Returns the counters and histograms of this work queue. Work that waits
+	 * much longer than it runs means more threads would help.
+	 *
+	 * @return a few lines describing the work done by this queue
+	 */
+	public String getSummary() {
+		return String.format("Work queue: %d threads, %d submitted, %d completed, %d failed, %d queued%n"
+				+ "  wait: %s%n  run:  %s", size(), getSubmitted(), getCompleted(), getFailed(), getQueued(),
+				waitTimes, runTimes);
+	}
+
+	/**
+	 * Wakes a single idle worker, if there is one. Work is always added before an
+	 * idle worker is looked for, and workers always list themselves as idle
+	 * before looking for work one last time, so work is never left behind with
+	 * every worker parked.
+	 */
+	private void wakeOne() {
+		PoolWorker worker;
+		while ((worker = idle.poll()) != null) {
+			if (worker.parked.compareAndSet(true, false)) {
+				LockSupport.unpark(worker);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * What happens to work added to a bounded work queue once it is full.
+	 */
+	public enum Policy {
+
+		/**
+		 * Wait until a worker takes waiting work. Work added by workers is queued
+		 * anyway.
+		 */
+		BLOCK,
+
+		/**
+		 * Run the work in the thread adding it. Work added while doing so is queued
+		 * anyway.
+		 */
+		CALLER_RUNS
+	}
+
 	/**
 	 * Waits until work is available in the work queue. When work is found, will
 	 * remove the work from the queue and run it. If a shutdown is detected, will
@@ -139,43 +643,131 @@ public class WorkQueue {
 	 */
 	private class PoolWorker extends Thread {
 
+		/**
+		 * Work added by this worker, run from the front by this worker and stolen
+		 * from the back by the others.
+		 */
+		private final ConcurrentLinkedDeque<Task> local = new ConcurrentLinkedDeque<>();
+
+		/**
+		 * Whether this worker is idle and waiting to be woken.
+		 */
+		private final AtomicBoolean parked = new AtomicBoolean();
+
+		/**
+		 * Returns the work queue this worker belongs to.
+		 *
+		 * @return the work queue of this worker
+		 */
+		private WorkQueue getQueue() {
+			return WorkQueue.this;
+		}
+
+		/**
+		 * Finds the next work to run, stealing from other workers if there is none
+		 * of its own.
+		 *
+		 * @return the work to run, or {@code null} if there is none
+		 */
+		private Task findWork() {
+			Task r = local.pollFirst();
+			if (r == null) {
+				r = queue.poll();
+			}
+			if (r == null && workers.length > 1) {
+				int start = ThreadLocalRandom.current().nextInt(workers.length);
+				for (int i = 0; i < workers.length && r == null; i++) {
+					PoolWorker victim = workers[(start + i) % workers.length];
+					if (victim != this) {
+						r = victim.local.pollLast();
+					}
+				}
+			}
+			return r;
+		}
+
 		/**
 		 * When work is found, will remove the work from the queue and run it.
 		 */
 		@Override
 		public void run() {
-			Runnable r = null;
-
-			while (true) {
-				synchronized (queue) {
-					while (queue.isEmpty() && !shutdown) {
-						try {
-							queue.wait();
-						} catch (InterruptedException ex) {
-							System.err.println("Warning: Work queue interrupted.");
-							Thread.currentThread().interrupt();
+			Task r = null;
+
+			// reading the clock costs about as much as running a tiny task, so the
+			// time one task finished is used as the time the next one was taken
+			long now = System.nanoTime();
+
+			while (!shutdown) {
+				r = findWork();
+
+				if (r == null) {
+					// list as idle before looking one last time, so new work wakes this worker
+					parked.set(true);
+					idle.add(this);
+					r = findWork();
+
+					if (r == null) {
+						while (parked.get() && !shutdown) {
+							LockSupport.park(this);
+							if (Thread.interrupted()) {
+								System.err.println("Warning: Work queue interrupted.");
+							}
 						}
+						now = System.nanoTime();
+						continue;
 					}
 
-					// exit while for one of two reasons:
-					// (a) queue has work, or (b) shutdown has been called
+					// found work after all, a worker woken instead will find other work or park
+					parked.set(false);
+				}
 
-					if (shutdown) {
-						break;
-					} else {
-						r = queue.removeFirst();
-					}
+				if (shutdown) {
+					drop(r);
+					break;
 				}
+				taken();
 
-				try {
-					r.run();
-				} catch (RuntimeException ex) {
-					// catch runtime exceptions to avoid leaking threads
-					System.err.println("Warning: Work queue encountered an exception while running.");
-				} finally {
-					decrementPending();
+				// more work is waiting, so share it with another idle worker
+				if (!local.isEmpty() || !queue.isEmpty()) {
+					wakeOne();
 				}
+
+				now = WorkQueue.this.run(r.work, r.queuedAt, now);
 			}
 		}
 	}
+
+	/**
+	 * A work request waiting to run, along with when it was added.
+	 */
+	private static class Task {
+
+		/**
+		 * The work request.
+		 */
+		private final Runnable work;
+
+		/**
+		 * Run instead of the work request if it is dropped, or {@code null}.
+		 */
+		private final Runnable dropped;
+
+		/**
+		 * When the work request was added, from {@link System#nanoTime()}.
+		 */
+		private final long queuedAt;
+
+		/**
+		 * Initializes a waiting work request.
+		 *
+		 * @param work     the work request
+		 * @param dropped  run instead of the work request if it is dropped
+		 * @param queuedAt when the work request was added
+		 */
+		public Task(Runnable work, Runnable dropped, long queuedAt) {
+			this.work = work;
+			this.dropped = dropped;
+			this.queuedAt = queuedAt;
+		}
+	}
 }